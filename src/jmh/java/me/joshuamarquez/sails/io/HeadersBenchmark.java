@@ -0,0 +1,61 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sending socket headers with request headers, as done for every request
+ * built by {@link SailsSocket#request}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeadersBenchmark {
+
+    @Param({"2", "20"})
+    public int headerCount;
+
+    private SailsHeaders socketHeaders;
+    private JSONObject requestHeaders;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> headers = new HashMap<String, String>();
+
+        for (int i = 0; i < headerCount; i++) {
+            headers.put("x-header-" + i, "value-" + i);
+        }
+
+        socketHeaders = new SailsHeaders(headers);
+        requestHeaders = new JSONObject().put("x-header-0", "override").put("x-request-id", "42");
+    }
+
+    /**
+     * Socket headers only, already serialized.
+     */
+    @Benchmark
+    public String socketHeadersOnly() {
+        return socketHeaders.overlay(null).toJSONString();
+    }
+
+    @Benchmark
+    public String overlay() {
+        return socketHeaders.overlay(requestHeaders).toJSONString();
+    }
+
+    /**
+     * Merging into a JSONObject, as done before socket headers were pre-serialized.
+     */
+    @Benchmark
+    public String merge() {
+        return socketHeaders.merge(requestHeaders).toString();
+    }
+
+}
@@ -0,0 +1,62 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of acknowledgements into {@link JWR}s, from the JSON text received by Socket.IO.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JWRBenchmark {
+
+    // Records in the response body
+    @Param({"1", "1000"})
+    public int bodySize;
+
+    private String text;
+    private JSONObject parsed;
+    private SailsSocketCodec codec;
+
+    @Setup
+    public void setUp() {
+        JSONArray body = new JSONArray();
+
+        for (int i = 0; i < bodySize; i++) {
+            body.put(new JSONObject()
+                    .put("id", i)
+                    .put("name", "User " + i)
+                    .put("email", "user" + i + "@example.com"));
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("statusCode", 200);
+        response.put("headers", new JSONObject().put("Content-Type", "application/json"));
+        response.put("body", body);
+
+        text = response.toString();
+        parsed = new JSONObject(text);
+        codec = new SailsJSONCodec();
+    }
+
+    @Benchmark
+    public JWR decode() {
+        return codec.decode(parsed);
+    }
+
+    @Benchmark
+    public Object parseDecodeAndRead() {
+        JWR response = codec.decode(new JSONObject(text));
+        response.getHeaders();
+
+        return response.getBody();
+    }
+
+}
@@ -0,0 +1,55 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queueing requests while disconnected then draining them, by batches of
+ * {@link #batchSize} requests of mixed priorities.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestQueueBenchmark {
+
+    @Param({"100", "10000"})
+    public int batchSize;
+
+    private SailsRequestQueue queue;
+    private SailsSocketRequest[] requests;
+
+    @Setup
+    public void setUp() {
+        SailsSocketRequest.Priority[] priorities = SailsSocketRequest.Priority.values();
+        JSONObject params = new JSONObject().put("name", "Joshua");
+
+        queue = new SailsRequestQueue();
+        requests = new SailsSocketRequest[batchSize];
+
+        for (int i = 0; i < batchSize; i++) {
+            requests[i] = new SailsSocketRequest(null, SailsSocketRequest.METHOD_POST, "/user", params, null, null)
+                    .setPriority(priorities[i % priorities.length]);
+        }
+    }
+
+    @Benchmark
+    public int offerAndDrain() throws InterruptedException {
+        for (SailsSocketRequest request : requests) {
+            queue.offer(request);
+        }
+
+        int drained = 0;
+
+        while (queue.poll() != null) {
+            drained++;
+        }
+
+        return drained;
+    }
+
+}
@@ -3,20 +3,35 @@ package me.joshuamarquez.sails.io;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The JWR (JSON WebSocket Response) received from a Sails server.
+ *
+ * Only the status code is read up front, headers and body are read
+ * from the original {@link JSONObject} when they are accessed.
  */
 public class JWR {
 
-    private int statusCode;
+    private final int statusCode;
+
+    // Created on first access, a view over the "headers" JSONObject
     private Map<String, String> headers;
-    private Object body;
 
-    private JSONObject jsonObjectResponse;
+    private final JSONObject jsonObjectResponse;
+
+    // Converts the body in getBody(Class)
+    private final SailsSocketCodec codec;
+
+    private boolean local;
+
+    // Delivered to several listeners, records must not be released
+    private volatile boolean shared;
 
     /**
      * @param response {@link Object}
@@ -25,41 +40,125 @@ public class JWR {
      *         => :headers
      */
     public JWR(JSONObject response) {
-        try {
-            jsonObjectResponse = response;
-
-            statusCode = jsonObjectResponse.getInt("statusCode");
-
-            headers = new HashMap<String, String>();
+        this(response, new SailsJSONCodec());
+    }
 
-            JSONObject jsonHeaders = jsonObjectResponse.getJSONObject("headers");
-            Iterator<?> keys = jsonHeaders.keys();
+    /**
+     * @param response {@link Object}
+     *         => :statusCode
+     *         => :body
+     *         => :headers
+     * @param codec {@link SailsSocketCodec} converting the body in {@link #getBody(Class)}
+     */
+    public JWR(JSONObject response, SailsSocketCodec codec) {
+        jsonObjectResponse = response;
+        statusCode = jsonObjectResponse.optInt("statusCode");
+        this.codec = codec;
+    }
 
-            while (keys.hasNext()) {
-                String key = (String) keys.next();
-                headers.put(key, jsonHeaders.getString(key));
-            }
+    /**
+     * Build a response which was not sent by Sails but produced by this client,
+     * e.g. when a request is rejected by a full request queue.
+     *
+     * @param statusCode HTTP status code
+     * @param message body of the response
+     * @return {@link JWR}
+     */
+    static JWR local(int statusCode, String message) {
+        JSONObject response = new JSONObject();
 
-            body = jsonObjectResponse.get("body");
+        try {
+            response.put("statusCode", statusCode);
+            response.put("headers", new JSONObject());
+            response.put("body", message);
         } catch (JSONException e) {
-            e.printStackTrace();
+            throw new RuntimeException(e);
         }
+
+        JWR jwr = new JWR(response);
+        jwr.local = true;
+
+        return jwr;
     }
 
     public int getStatusCode() {
         return statusCode;
     }
 
+    /**
+     * @return immutable view of the response headers.
+     */
     public Map<String, String> getHeaders() {
+        if (headers == null) {
+            JSONObject jsonHeaders = jsonObjectResponse.optJSONObject("headers");
+
+            headers = jsonHeaders != null
+                    ? new HeadersView(jsonHeaders) : Collections.<String, String>emptyMap();
+        }
+
         return headers;
     }
 
     public Object getBody() {
-        return body;
+        return jsonObjectResponse.opt("body");
+    }
+
+    /**
+     * Convert the body by the {@link SailsSocketCodec} which decoded this response.
+     *
+     * @param type class the body is converted to
+     * @return converted body, null if there is no body
+     * @throws IllegalArgumentException if the body cannot be converted into type
+     */
+    public <T> T getBody(Class<T> type) {
+        return codec.decodeBody(getBody(), type);
+    }
+
+    /**
+     * Iterate over the body one record at a time: the elements of an array body,
+     * also when the array is sent as a JSON string, otherwise the body itself.
+     *
+     * A JSON string body is decoded one element at a time, once checked to hold a
+     * whole JSON array: other text, e.g. "[INFO] done", is a single record. Records of an array body
+     * can be released as they are returned, so that processed records can be garbage
+     * collected before the whole body is processed, {@link #getBody()} then holds
+     * {@link JSONObject#NULL} in their place. Records of a response shared by
+     * coalesced requests are never released.
+     *
+     * @param release whether to release array records from the body once returned
+     * @return {@link Iterator} over the body records
+     */
+    public Iterator<Object> getBodyRecords(boolean release) {
+        return JWRRecords.iterator(getBody(), release && !shared);
     }
 
     public boolean isError() {
-        return this.statusCode < 200 || this.statusCode >= 400;
+        return isError(this.statusCode);
+    }
+
+    /**
+     * @return whether statusCode is an error, anything but 2xx and 3xx, e.g. 0 for an empty ack.
+     */
+    static boolean isError(int statusCode) {
+        return statusCode < 200 || statusCode >= 400;
+    }
+
+    /**
+     * @return whether this response was produced by this client instead of Sails.
+     */
+    public boolean isLocal() {
+        return local;
+    }
+
+    /**
+     * @return whether this response is delivered to several coalesced requests.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    void setShared(boolean shared) {
+        this.shared = shared;
     }
 
     public JSONObject getJsonObjectResponse() {
@@ -69,6 +168,76 @@ public class JWR {
     @Override
     public String toString() {
         return String.format("Status :: %d\nHeaders Count :: %d\nBody :: %s",
-                statusCode, headers.size(), body);
+                statusCode, getHeaders().size(), getBody());
+    }
+
+    /**
+     * Read-only {@link Map} over a {@link JSONObject} of headers, values are
+     * converted to {@link String} when read.
+     */
+    private static class HeadersView extends AbstractMap<String, String> {
+
+        private final JSONObject jsonHeaders;
+
+        HeadersView(JSONObject jsonHeaders) {
+            this.jsonHeaders = jsonHeaders;
+        }
+
+        @Override
+        public String get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+
+            return asString(jsonHeaders.opt((String) key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && jsonHeaders.has((String) key);
+        }
+
+        @Override
+        public int size() {
+            return jsonHeaders.length();
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    final Iterator<String> keys = jsonHeaders.keys();
+
+                    return new Iterator<Entry<String, String>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return keys.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            String key = keys.next();
+
+                            return new SimpleImmutableEntry<String, String>(key, asString(jsonHeaders.opt(key)));
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return jsonHeaders.length();
+                }
+            };
+        }
+
+        private static String asString(Object value) {
+            return value == null || JSONObject.NULL.equals(value) ? null : value.toString();
+        }
     }
 }
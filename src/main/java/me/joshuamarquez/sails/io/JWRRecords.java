@@ -0,0 +1,174 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Record iterators over a {@link JWR} body.
+ */
+final class JWRRecords {
+
+    private JWRRecords() { /* No instances */ }
+
+    /**
+     * @param body response body
+     * @param release whether to release array elements from the body once returned
+     * @return iterator over the body records
+     */
+    static Iterator<Object> iterator(Object body, boolean release) {
+        if (body == null || JSONObject.NULL.equals(body)) {
+            return Collections.emptyIterator();
+        }
+
+        if (body instanceof JSONArray) {
+            return new ArrayRecords((JSONArray) body, release);
+        }
+
+        if (body instanceof String && isJSONArray((String) body)) {
+            return new TokenizedRecords((String) body);
+        }
+
+        return Collections.singletonList(body).iterator();
+    }
+
+    /**
+     * Check a whole body before streaming it, so that plain text such as "[INFO] done"
+     * is one record rather than a truncated array. Elements are decoded and dropped one
+     * at a time, the array is never held in memory.
+     *
+     * @return whether text is a JSON array and nothing else.
+     */
+    private static boolean isJSONArray(String text) {
+        if (!text.trim().startsWith("[")) {
+            return false;
+        }
+
+        try {
+            TokenizedRecords records = new TokenizedRecords(text);
+
+            while (records.hasNext()) {
+                records.next();
+            }
+
+            return records.tokener.nextClean() == 0;
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Walks an already decoded array, optionally replacing returned elements
+     * by {@link JSONObject#NULL} so they can be garbage collected.
+     */
+    private static class ArrayRecords implements Iterator<Object> {
+
+        private final JSONArray array;
+        private final boolean release;
+
+        private int index;
+
+        ArrayRecords(JSONArray array, boolean release) {
+            this.array = array;
+            this.release = release;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < array.length();
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Object record = array.opt(index);
+
+            if (release) {
+                array.put(index, JSONObject.NULL);
+            }
+
+            index++;
+
+            return record;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Decodes the elements of a JSON array string one at a time.
+     */
+    private static class TokenizedRecords implements Iterator<Object> {
+
+        private final JSONTokener tokener;
+
+        private boolean done;
+
+        TokenizedRecords(String json) {
+            tokener = new JSONTokener(json);
+
+            if (tokener.nextClean() != '[') {
+                throw new JSONException("Body is not a JSON array");
+            }
+
+            done = tokener.nextClean() == ']';
+            if (!done) {
+                tokener.back();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !done;
+        }
+
+        @Override
+        public Object next() {
+            if (done) {
+                throw new NoSuchElementException();
+            }
+
+            // Skip separator left by the previous record
+            char c = tokener.nextClean();
+            if (c == ',') {
+                c = tokener.nextClean();
+            }
+            tokener.back();
+
+            Object record = tokener.nextValue();
+
+            // org.json reads unquoted text as a string, which JSON does not allow
+            if (record instanceof String && c != '"' && c != '\'') {
+                throw tokener.syntaxError("Unquoted text");
+            }
+
+            c = tokener.nextClean();
+            if (c == ']') {
+                done = true;
+            } else if (c != ',') {
+                throw tokener.syntaxError("Expected a ',' or ']'");
+            } else {
+                tokener.back();
+            }
+
+            return record;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+package me.joshuamarquez.sails.io;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs response and event listeners on an {@link Executor} instead of the Socket.IO
+ * event thread. When ordered, response listeners sharing a request tag, and event
+ * listeners sharing an event name, run one after the other in submission order while
+ * other callbacks run in parallel. Tags and event names never share an order, even
+ * when equal.
+ *
+ * Callbacks rejected by the executor, e.g. a saturated bounded pool, run on the
+ * submitting thread so that none is lost.
+ */
+final class SailsCallbackExecutor {
+
+    private static final Logger logger = Logger.getLogger(SailsCallbackExecutor.class.getName());
+
+    private final Executor executor;
+    private final boolean ordered;
+
+    // Tags and event names having callbacks queued or running, each guarded by itself
+    private final Map<String, Serial> tags = new HashMap<String, Serial>();
+    private final Map<String, Serial> events = new HashMap<String, Serial>();
+
+    SailsCallbackExecutor(Executor executor, boolean ordered) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+
+        this.executor = executor;
+        this.ordered = ordered;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * @param tag response listeners of requests with the same tag run in order when ordered,
+     * null for no order
+     * @param callback listener call
+     */
+    void executeResponse(String tag, Runnable callback) {
+        execute(tags, tag, callback);
+    }
+
+    /**
+     * @param event listeners of the same event run in order when ordered
+     * @param callback listener call
+     */
+    void executeEvent(String event, Runnable callback) {
+        execute(events, event, callback);
+    }
+
+    private void execute(Map<String, Serial> serials, String key, Runnable callback) {
+        if (!ordered || key == null) {
+            submit(new Guarded(callback));
+            return;
+        }
+
+        Serial serial;
+        boolean start;
+
+        synchronized (serials) {
+            serial = serials.get(key);
+
+            if (serial == null) {
+                serial = new Serial(serials, key);
+                serials.put(key, serial);
+            }
+
+            serial.callbacks.add(callback);
+            start = !serial.running;
+            serial.running = true;
+        }
+
+        if (start) {
+            submit(serial);
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private static void run(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            // Otherwise swallowed by most executors
+            logger.log(Level.WARNING, "Listener failed", e);
+        }
+    }
+
+    private static final class Guarded implements Runnable {
+
+        private final Runnable callback;
+
+        Guarded(Runnable callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            SailsCallbackExecutor.run(callback);
+        }
+    }
+
+    /**
+     * Callbacks of a key, running one at a time. The next callback is submitted
+     * again rather than run in a loop so that busy keys do not hold a thread.
+     */
+    private final class Serial implements Runnable {
+
+        private final Map<String, Serial> serials;
+        private final String key;
+
+        // Guarded by serials
+        private final Queue<Runnable> callbacks = new ArrayDeque<Runnable>();
+        private boolean running;
+
+        Serial(Map<String, Serial> serials, String key) {
+            this.serials = serials;
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            Runnable callback;
+
+            synchronized (serials) {
+                callback = callbacks.poll();
+            }
+
+            try {
+                SailsCallbackExecutor.run(callback);
+            } finally {
+                // Even when the callback threw an Error, otherwise the key would never run again
+                if (hasNext()) {
+                    submit(this);
+                }
+            }
+        }
+
+        /**
+         * @return false once no callback is left, the key is then released.
+         */
+        private boolean hasNext() {
+            synchronized (serials) {
+                if (callbacks.isEmpty()) {
+                    running = false;
+                    serials.remove(key);
+                    return false;
+                }
+
+                return true;
+            }
+        }
+    }
+
+}
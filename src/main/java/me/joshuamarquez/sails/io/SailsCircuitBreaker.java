@@ -0,0 +1,401 @@
+package me.joshuamarquez.sails.io;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breakers keyed by request method and route normalized by {@link SailsRoute},
+ * set on a socket by {@link SailsSocket#setCircuitBreaker(SailsCircuitBreaker)}.
+ *
+ * A breaker opens when the ratio of failed calls among the last {@link #getWindowSize()}
+ * calls of its route reaches {@link #getFailureRateThreshold()}. Failed calls are responses
+ * with a 5xx status code, timeouts, and calls slower than {@link #getSlowCallDuration()}
+ * when set. While open, requests to the route fail fast with a local 503 {@link JWR}
+ * without reaching Sails. Once {@link #getOpenDuration()} has elapsed the breaker lets a few
+ * probe requests through: it closes if they all succeed and opens again otherwise. Probe
+ * permits are taken by each emitted attempt, only the outcomes of their holders count.
+ *
+ * Other routes are not affected, so one failing controller does not hold up every request
+ * of the socket. A breaker can be shared by several sockets, e.g. by a {@link SailsSocketPool}.
+ */
+public class SailsCircuitBreaker {
+
+    private static final Logger logger = Logger.getLogger(SailsCircuitBreaker.class.getName());
+
+    public enum State {
+        /**
+         * Requests go through, their outcome is recorded.
+         */
+        CLOSED,
+        /**
+         * Requests fail fast.
+         */
+        OPEN,
+        /**
+         * A few probe requests go through, others fail fast.
+         */
+        HALF_OPEN
+    }
+
+    private volatile double failureRateThreshold = 0.5;
+    private volatile int windowSize = 100;
+    private volatile int minimumCalls = 20;
+
+    // Nanoseconds, 0 if slow calls do not count as failures
+    private volatile long slowCallDuration;
+
+    private volatile long openDuration = TimeUnit.SECONDS.toNanos(10);
+    private volatile int halfOpenProbes = 3;
+
+    // Circuits of routes which had calls, by "method route"
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * @param failureRateThreshold ratio of failed calls opening a breaker, 0.5 by default
+     * @return {@link SailsCircuitBreaker}
+     */
+    public SailsCircuitBreaker setFailureRateThreshold(double failureRateThreshold) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("failureRateThreshold must be in ]0, 1]");
+        }
+
+        this.failureRateThreshold = failureRateThreshold;
+
+        return this;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * Set how many calls the failure rate is measured over. Applies to routes called
+     * for the first time or after {@link #reset()}.
+     *
+     * @param windowSize number of last calls of a route measured, 100 by default
+     * @param minimumCalls calls needed before a breaker can open, 20 by default
+     * @return {@link SailsCircuitBreaker}
+     */
+    public SailsCircuitBreaker setWindow(int windowSize, int minimumCalls) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be greater than zero");
+        }
+        if (minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("minimumCalls must be in [1, windowSize]");
+        }
+
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+
+        return this;
+    }
+
+    /**
+     * @return milliseconds after which a call counts as failed, 0 if disabled.
+     */
+    public long getSlowCallDuration() {
+        return TimeUnit.NANOSECONDS.toMillis(slowCallDuration);
+    }
+
+    /**
+     * Count calls slower than duration as failed, even when successful. Disabled by default.
+     *
+     * @param duration call duration, from the moment the request is emitted, 0 to disable
+     * @param unit {@link TimeUnit} of duration
+     * @return {@link SailsCircuitBreaker}
+     */
+    public SailsCircuitBreaker setSlowCallDuration(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration cannot be negative");
+        }
+
+        this.slowCallDuration = unit.toNanos(duration);
+
+        return this;
+    }
+
+    /**
+     * @return milliseconds a breaker stays open before probing.
+     */
+    public long getOpenDuration() {
+        return TimeUnit.NANOSECONDS.toMillis(openDuration);
+    }
+
+    /**
+     * @param duration time a breaker stays open before probing, 10 seconds by default
+     * @param unit {@link TimeUnit} of duration
+     * @return {@link SailsCircuitBreaker}
+     */
+    public SailsCircuitBreaker setOpenDuration(long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("duration must be greater than zero");
+        }
+
+        this.openDuration = unit.toNanos(duration);
+
+        return this;
+    }
+
+    public int getHalfOpenProbes() {
+        return halfOpenProbes;
+    }
+
+    /**
+     * @param halfOpenProbes requests let through by a half-open breaker, which must all
+     * succeed to close it, 3 by default
+     * @return {@link SailsCircuitBreaker}
+     */
+    public SailsCircuitBreaker setHalfOpenProbes(int halfOpenProbes) {
+        if (halfOpenProbes < 1) {
+            throw new IllegalArgumentException("halfOpenProbes must be greater than zero");
+        }
+
+        this.halfOpenProbes = halfOpenProbes;
+
+        return this;
+    }
+
+    /**
+     * @param method request method
+     * @param route route normalized by {@link SailsRoute#normalize(String)}, e.g. "/user/:id"
+     * @return {@link State} of the breaker of route.
+     */
+    public State getState(String method, String route) {
+        Circuit circuit = circuits.get(key(method, route));
+
+        return circuit != null ? circuit.getState() : State.CLOSED;
+    }
+
+    /**
+     * Close every breaker and forget recorded calls.
+     */
+    public void reset() {
+        circuits.clear();
+    }
+
+    /**
+     * Let an attempt of a request be emitted unless the breaker of its route is open.
+     * A half-open breaker gives the attempt a probe permit, held until its outcome is
+     * recorded or it is released.
+     *
+     * @return false if the attempt must fail fast.
+     */
+    boolean tryAcquire(SailsSocketRequest request) {
+        Circuit circuit = circuits.get(key(request.getMethod(), request.getRoute()));
+
+        return circuit == null || circuit.tryAcquire(request);
+    }
+
+    /**
+     * Give back the probe permit of an attempt ending without an outcome, e.g. cancelled.
+     */
+    void release(SailsSocketRequest request) {
+        Circuit circuit = circuits.get(key(request.getMethod(), request.getRoute()));
+
+        if (circuit != null) {
+            circuit.release(request);
+        }
+    }
+
+    /**
+     * @return whether the breaker of the request route is open and not ready to probe yet.
+     */
+    boolean isOpen(SailsSocketRequest request) {
+        Circuit circuit = circuits.get(key(request.getMethod(), request.getRoute()));
+
+        return circuit != null && circuit.isOpen();
+    }
+
+    /**
+     * Record the outcome of an emitted request.
+     *
+     * @param request {@link SailsSocketRequest}
+     * @param response {@link JWR} of the request
+     * @param duration nanoseconds since the request was emitted
+     */
+    void record(SailsSocketRequest request, JWR response, long duration) {
+        boolean timedOut = response.isLocal() && response.getStatusCode() == 408;
+
+        // Other local responses, e.g. a disconnection, say nothing about the route
+        if (response.isLocal() && !timedOut) {
+            return;
+        }
+
+        long slow = slowCallDuration;
+        boolean failed = timedOut || response.getStatusCode() >= 500 || (slow > 0 && duration >= slow);
+
+        String key = key(request.getMethod(), request.getRoute());
+        Circuit circuit = circuits.get(key);
+
+        if (circuit == null) {
+            Circuit created = new Circuit(key, windowSize);
+            circuit = circuits.putIfAbsent(key, created);
+
+            if (circuit == null) {
+                circuit = created;
+            }
+        }
+
+        circuit.record(request, failed);
+    }
+
+    private static String key(String method, String route) {
+        return method + ' ' + route;
+    }
+
+    /**
+     * Breaker of a route, its calls are recorded in a ring buffer.
+     */
+    private final class Circuit {
+
+        private final String key;
+
+        // Guarded by this
+        private final boolean[] failures;
+        private int next;
+        private int calls;
+        private int failed;
+
+        private State state = State.CLOSED;
+        // System.nanoTime() when opened, or when the current probes were let through
+        private long since;
+        // Permit held by the current probes, replaced on every transition
+        private Object permit = new Object();
+        private int probes;
+        private int probeSuccesses;
+
+        Circuit(String key, int windowSize) {
+            this.key = key;
+            this.failures = new boolean[windowSize];
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        synchronized boolean isOpen() {
+            return state == State.OPEN && System.nanoTime() - since < openDuration;
+        }
+
+        synchronized boolean tryAcquire(SailsSocketRequest request) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+
+            long now = System.nanoTime();
+
+            if (state == State.OPEN) {
+                if (now - since < openDuration) {
+                    return false;
+                }
+
+                transition(State.HALF_OPEN, now);
+            }
+
+            if (probes < halfOpenProbes) {
+                probes++;
+                request.setProbe(permit);
+                return true;
+            }
+
+            // Probes lost without an outcome, let new ones through
+            if (now - since >= openDuration) {
+                since = now;
+                permit = new Object();
+                probes = 1;
+                probeSuccesses = 0;
+                request.setProbe(permit);
+                return true;
+            }
+
+            return false;
+        }
+
+        synchronized void release(SailsSocketRequest request) {
+            if (takeProbe(request)) {
+                probes--;
+            }
+        }
+
+        synchronized void record(SailsSocketRequest request, boolean failure) {
+            boolean probe = takeProbe(request);
+
+            switch (state) {
+                case CLOSED:
+                    if (calls == failures.length) {
+                        if (failures[next]) {
+                            failed--;
+                        }
+                    } else {
+                        calls++;
+                    }
+
+                    failures[next] = failure;
+                    next = (next + 1) % failures.length;
+
+                    if (failure) {
+                        failed++;
+                    }
+
+                    if (calls >= minimumCalls && failed >= failureRateThreshold * calls) {
+                        logger.warning("Circuit breaker of " + key + " opened, " + failed + " of the last "
+                                + calls + " calls failed");
+                        transition(State.OPEN, System.nanoTime());
+                    }
+                    break;
+
+                case HALF_OPEN:
+                    // Late response of a request emitted before probing
+                    if (!probe) {
+                        break;
+                    }
+
+                    if (failure) {
+                        logger.warning("Circuit breaker of " + key + " opened again, a probe failed");
+                        transition(State.OPEN, System.nanoTime());
+                    } else if (++probeSuccesses >= halfOpenProbes) {
+                        logger.info("Circuit breaker of " + key + " closed");
+                        transition(State.CLOSED, System.nanoTime());
+                    }
+                    break;
+
+                default:
+                    // Late response of a request sent before opening
+            }
+        }
+
+        /**
+         * @return whether request held a permit of the current probes, which it no longer holds.
+         */
+        private boolean takeProbe(SailsSocketRequest request) {
+            Object probe = request.getProbe();
+            request.setProbe(null);
+
+            return probe == permit;
+        }
+
+        private void transition(State state, long now) {
+            this.state = state;
+            since = now;
+            permit = new Object();
+            probes = 0;
+            probeSuccesses = 0;
+
+            // Measure a fresh window once closed
+            next = 0;
+            calls = 0;
+            failed = 0;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+
+/**
+ * Message pushed by Sails, decoded once by {@link SailsEventRouter} and shared
+ * by every matching listener, which must not modify it.
+ *
+ * Resourceful pub/sub messages have a verb, the id of the record and its data, e.g.
+ * {"verb": "updated", "id": 42, "data": {...}, "previous": {...}}. Other messages,
+ * e.g. custom broadcasts, have no verb nor id and their data is the message itself.
+ */
+public class SailsEvent {
+
+    public final static String VERB_CREATED = "created";
+    public final static String VERB_UPDATED = "updated";
+    public final static String VERB_DESTROYED = "destroyed";
+    public final static String VERB_ADDED_TO = "addedTo";
+    public final static String VERB_REMOVED_FROM = "removedFrom";
+    public final static String VERB_MESSAGED = "messaged";
+
+    private final String name;
+    private final String verb;
+    private final String id;
+    private final Object data;
+    private final Object previous;
+    private final Object message;
+
+    private final SailsSocketCodec codec;
+
+    // Last conversion of data by getData(Class), guarded by this
+    private Class<?> convertedType;
+    private Object converted;
+
+    private SailsEvent(String name, String verb, String id, Object data, Object previous, Object message,
+                       SailsSocketCodec codec) {
+        this.name = name;
+        this.verb = verb;
+        this.id = id;
+        this.data = data;
+        this.previous = previous;
+        this.message = message;
+        this.codec = codec;
+    }
+
+    /**
+     * @param name event name
+     * @param message first argument of the event, null if none
+     * @param codec {@link SailsSocketCodec} converting data in {@link #getData(Class)}
+     * @return {@link SailsEvent}
+     */
+    static SailsEvent decode(String name, Object message, SailsSocketCodec codec) {
+        if (message instanceof JSONObject) {
+            JSONObject json = (JSONObject) message;
+            String verb = json.optString("verb", null);
+
+            if (verb != null) {
+                Object data = json.opt("data");
+                Object id = json.opt("id");
+
+                // Created records only have their id in data with some Sails versions
+                if (id == null && data instanceof JSONObject) {
+                    id = ((JSONObject) data).opt("id");
+                }
+
+                return new SailsEvent(name, verb, idOf(id), data, json.opt("previous"), message, codec);
+            }
+        }
+
+        return new SailsEvent(name, null, null, message, null, message, codec);
+    }
+
+    /**
+     * @return key of a record id, numbers and strings of the same id are equal.
+     */
+    static String idOf(Object id) {
+        if (id == null || id == JSONObject.NULL) {
+            return null;
+        }
+
+        if (id instanceof Double || id instanceof Float) {
+            double value = ((Number) id).doubleValue();
+
+            if (value == Math.rint(value) && !Double.isInfinite(value)) {
+                return String.valueOf((long) value);
+            }
+        }
+
+        return String.valueOf(id);
+    }
+
+    /**
+     * @return event name, e.g. the model identity "user".
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return verb of a pub/sub message, e.g. {@link #VERB_UPDATED}, null for other messages.
+     */
+    public String getVerb() {
+        return verb;
+    }
+
+    /**
+     * @return id of the record as a string, null if the message has none.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return data of a pub/sub message, the message itself for other messages.
+     */
+    public Object getData() {
+        return data;
+    }
+
+    /**
+     * Convert data into type with the codec of the socket. The conversion is kept so that
+     * listeners asking for the same type share it, the result must not be modified.
+     *
+     * @param type class data is converted to
+     * @return converted data, null if there is none
+     * @throws IllegalArgumentException if data cannot be converted into type
+     */
+    public synchronized <T> T getData(Class<T> type) {
+        if (type != convertedType) {
+            converted = codec.decodeBody(data, type);
+            convertedType = type;
+        }
+
+        return type.cast(converted);
+    }
+
+    /**
+     * @return previous values of an updated record, null if the message has none.
+     */
+    public Object getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return message as received.
+     */
+    public Object getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + verb + " " + id;
+    }
+
+}
@@ -0,0 +1,252 @@
+package me.joshuamarquez.sails.io;
+
+import io.socket.emitter.Emitter;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reactive Streams view of an event pushed by Sails, e.g. the "user" event of
+ * a model subscription, created by {@link SailsSocket#events(String, Overflow, int)}.
+ *
+ * Each element holds the arguments of one event, as given to {@link Emitter.Listener#call(Object...)}.
+ * Every subscriber has its own buffer holding events until it requests them, an {@link Overflow}
+ * strategy decides what happens when the buffer is full. Events received before subscribing
+ * or while disconnected are not replayed. The stream never completes, cancel the subscription
+ * to stop listening.
+ */
+public class SailsEventPublisher implements Publisher<Object[]> {
+
+    private static final Logger logger = Logger.getLogger(SailsEventPublisher.class.getName());
+
+    /**
+     * What happens to an event received while the buffer of a subscriber is full.
+     */
+    public enum Overflow {
+        /**
+         * Only keep the latest event not delivered yet, the buffer size is 1.
+         */
+        LATEST,
+        /**
+         * Drop the new event.
+         */
+        DROP,
+        /**
+         * Drop the oldest buffered event, keeping the most recent ones.
+         */
+        BUFFER,
+        /**
+         * Cancel the subscription and signal an {@link IllegalStateException}.
+         */
+        ERROR
+    }
+
+    private final SailsSocket sailsSocket;
+    private final String event;
+    private final Overflow overflow;
+    private final int bufferSize;
+
+    SailsEventPublisher(SailsSocket sailsSocket, String event, Overflow overflow, int bufferSize) {
+        if (event == null) {
+            throw new IllegalArgumentException("event cannot be null");
+        }
+        if (overflow == null) {
+            throw new IllegalArgumentException("overflow cannot be null");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be greater than zero");
+        }
+
+        this.sailsSocket = sailsSocket;
+        this.event = event;
+        this.overflow = overflow;
+        this.bufferSize = overflow == Overflow.LATEST ? 1 : bufferSize;
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Object[]> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber cannot be null");
+        }
+
+        EventSubscription subscription = new EventSubscription(subscriber);
+
+        subscriber.onSubscribe(subscription);
+
+        if (!subscription.cancelled) {
+            sailsSocket.on(event, subscription);
+
+            // Cancelled while registering
+            if (subscription.cancelled) {
+                sailsSocket.off(event, subscription);
+            }
+        }
+    }
+
+    /**
+     * Buffer and demand of a subscriber. Signals are serialized by a drain loop
+     * entered by whichever thread receives an event or a request.
+     */
+    private class EventSubscription implements Subscription, Emitter.Listener {
+
+        private final Subscriber<? super Object[]> subscriber;
+
+        // Guarded by this
+        private final ArrayDeque<Object[]> buffer = new ArrayDeque<Object[]>();
+        private Throwable error;
+        private long dropped;
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        EventSubscription(Subscriber<? super Object[]> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void call(Object... args) {
+            if (cancelled) {
+                return;
+            }
+
+            synchronized (this) {
+                if (error != null) {
+                    return;
+                }
+
+                if (buffer.size() >= bufferSize) {
+                    switch (overflow) {
+                        case DROP:
+                            dropped++;
+                            return;
+
+                        case ERROR:
+                            error = new IllegalStateException("Subscriber of event " + event
+                                    + " did not keep up, " + bufferSize + " events buffered");
+                            buffer.clear();
+                            break;
+
+                        default:
+                            buffer.poll();
+                            dropped++;
+                    }
+                }
+
+                if (error == null) {
+                    buffer.offer(args != null ? args : new Object[0]);
+                }
+            }
+
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                synchronized (this) {
+                    if (error == null) {
+                        error = new IllegalArgumentException("Requested " + n + " events, must be positive");
+                    }
+                }
+            } else {
+                long current;
+                long next;
+
+                do {
+                    current = requested.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            }
+
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+
+            cancelled = true;
+            sailsSocket.off(event, this);
+
+            synchronized (this) {
+                buffer.clear();
+
+                if (dropped > 0) {
+                    logger.fine(dropped + " events " + event + " dropped for a slow subscriber");
+                }
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+
+            do {
+                long demand = requested.get();
+                long emitted = 0;
+
+                while (!cancelled) {
+                    Object[] args;
+                    Throwable failure;
+
+                    synchronized (this) {
+                        failure = error;
+                        args = failure == null && emitted != demand ? buffer.poll() : null;
+                    }
+
+                    if (failure != null) {
+                        cancel();
+                        subscriber.onError(failure);
+                        return;
+                    }
+
+                    if (args == null) {
+                        break;
+                    }
+
+                    try {
+                        subscriber.onNext(args);
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "Subscriber of event " + event + " failed", e);
+                        cancel();
+                        return;
+                    }
+
+                    emitted++;
+                }
+
+                if (emitted != 0 && demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+
+}
@@ -0,0 +1,322 @@
+package me.joshuamarquez.sails.io;
+
+import io.socket.emitter.Emitter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Routes events pushed by Sails to listeners filtering them by event name, verb and
+ * record id, returned by {@link SailsSocket#getEventRouter()}.
+ *
+ * The router binds a single listener per event name on the socket. Each message is
+ * decoded once into a {@link SailsEvent} then dispatched through lookup tables to the
+ * matching listeners only, so many fine-grained subscriptions cost no filtering. Tables
+ * are immutable and rebuilt on subscribe and unsubscribe, dispatching takes no lock.
+ */
+public class SailsEventRouter {
+
+    private static final Logger logger = Logger.getLogger(SailsEventRouter.class.getName());
+
+    private final SailsSocket sailsSocket;
+
+    // Routes having subscriptions, by event name, guarded by this
+    private final Map<String, Route> routes = new HashMap<String, Route>();
+
+    SailsEventRouter(SailsSocket sailsSocket) {
+        this.sailsSocket = sailsSocket;
+    }
+
+    /**
+     * Listen to every message of an event.
+     *
+     * @see #subscribe(String, String, Object, Listener)
+     */
+    public Subscription subscribe(String event, Listener listener) {
+        return subscribe(event, null, null, listener);
+    }
+
+    /**
+     * Listen to the messages of an event matching a verb and a record id.
+     *
+     * @param event event name, e.g. the model identity "user"
+     * @param verb verb e.g. {@link SailsEvent#VERB_UPDATED}, null for any verb
+     * @param id record id, a number or a string, null for any record
+     * @param listener {@link Listener} called with matching messages
+     * @return {@link Subscription} to unsubscribe
+     */
+    public Subscription subscribe(String event, String verb, Object id, Listener listener) {
+        if (event == null) {
+            throw new IllegalArgumentException("event cannot be null");
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+
+        Subscription subscription = new Subscription(event, verb, SailsEvent.idOf(id), listener);
+
+        synchronized (this) {
+            Route route = routes.get(event);
+
+            if (route == null) {
+                route = new Route(event);
+                routes.put(event, route);
+                sailsSocket.on(event, route);
+            }
+
+            route.table = route.table.with(subscription);
+        }
+
+        return subscription;
+    }
+
+    /**
+     * Remove every subscription to an event, like {@link Subscription#unsubscribe()}.
+     *
+     * @param event event name
+     */
+    public synchronized void unsubscribeAll(String event) {
+        Route route = routes.remove(event);
+
+        if (route != null) {
+            for (Map<String, Subscription[]> byId : route.table.byVerb.values()) {
+                for (Subscription[] subscriptions : byId.values()) {
+                    for (Subscription subscription : subscriptions) {
+                        subscription.cancelled = true;
+                    }
+                }
+            }
+
+            route.table = Table.EMPTY;
+            sailsSocket.off(event, route);
+        }
+    }
+
+    /**
+     * @return number of subscriptions to event.
+     */
+    public synchronized int getSubscriptionCount(String event) {
+        Route route = routes.get(event);
+
+        return route != null ? route.table.size : 0;
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        Route route = routes.get(subscription.event);
+
+        if (route == null) {
+            return;
+        }
+
+        route.table = route.table.without(subscription);
+
+        if (route.table.size == 0) {
+            routes.remove(subscription.event);
+            sailsSocket.off(subscription.event, route);
+        }
+    }
+
+    /**
+     * Called with the messages matching a subscription, from the thread receiving
+     * them or the callback executor of the socket.
+     */
+    public interface Listener {
+        void onEvent(SailsEvent event);
+    }
+
+    /**
+     * Subscription to the messages of an event matching a verb and a record id.
+     */
+    public final class Subscription {
+
+        private final String event;
+        private final String verb;
+        private final String id;
+        private final Listener listener;
+
+        // Checked before each call, messages may already be on their way to the listener
+        private volatile boolean cancelled;
+
+        private Subscription(String event, String verb, String id, Listener listener) {
+            this.event = event;
+            this.verb = verb;
+            this.id = id;
+            this.listener = listener;
+        }
+
+        public String getEvent() {
+            return event;
+        }
+
+        /**
+         * @return verb, null for any verb.
+         */
+        public String getVerb() {
+            return verb;
+        }
+
+        /**
+         * @return record id, null for any record.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Stop receiving messages. Once this returns the listener is not called again,
+         * though a call already running on another thread may still be completing.
+         */
+        public void unsubscribe() {
+            cancelled = true;
+            SailsEventRouter.this.unsubscribe(this);
+        }
+    }
+
+    /**
+     * Listener of an event on the socket, decoding its messages.
+     */
+    private final class Route implements Emitter.Listener {
+
+        private final String event;
+
+        // Replaced as a whole, guarded by the router for writes
+        private volatile Table table = Table.EMPTY;
+
+        Route(String event) {
+            this.event = event;
+        }
+
+        @Override
+        public void call(Object... args) {
+            Table table = this.table;
+
+            if (table.size == 0) {
+                return;
+            }
+
+            SailsEvent decoded = SailsEvent.decode(event, args.length > 0 ? args[0] : null, sailsSocket.getCodec());
+
+            Map<String, Subscription[]> byId = decoded.getVerb() != null ? table.byVerb.get(decoded.getVerb()) : null;
+            Map<String, Subscription[]> anyVerb = table.byVerb.get(null);
+
+            dispatch(byId, decoded);
+            dispatch(anyVerb, decoded);
+        }
+
+        private void dispatch(Map<String, Subscription[]> byId, SailsEvent decoded) {
+            if (byId == null) {
+                return;
+            }
+
+            if (decoded.getId() != null) {
+                dispatch(byId.get(decoded.getId()), decoded);
+            }
+
+            dispatch(byId.get(null), decoded);
+        }
+
+        private void dispatch(Subscription[] subscriptions, SailsEvent decoded) {
+            if (subscriptions == null) {
+                return;
+            }
+
+            for (Subscription subscription : subscriptions) {
+                if (subscription.cancelled) {
+                    continue;
+                }
+
+                try {
+                    subscription.listener.onEvent(decoded);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Listener of event " + event + " failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Immutable subscriptions of an event by verb then id, null keys match any verb or id.
+     */
+    private static final class Table {
+
+        static final Table EMPTY = new Table(Collections.<String, Map<String, Subscription[]>>emptyMap(), 0);
+
+        private final Map<String, Map<String, Subscription[]>> byVerb;
+        private final int size;
+
+        private Table(Map<String, Map<String, Subscription[]>> byVerb, int size) {
+            this.byVerb = byVerb;
+            this.size = size;
+        }
+
+        Table with(Subscription subscription) {
+            Subscription[] current = get(subscription);
+            Subscription[] subscriptions;
+
+            if (current == null) {
+                subscriptions = new Subscription[] {subscription};
+            } else {
+                subscriptions = Arrays.copyOf(current, current.length + 1);
+                subscriptions[current.length] = subscription;
+            }
+
+            return put(subscription, subscriptions, size + 1);
+        }
+
+        Table without(Subscription subscription) {
+            Subscription[] current = get(subscription);
+
+            if (current == null) {
+                return this;
+            }
+
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == subscription) {
+                    Subscription[] subscriptions = new Subscription[current.length - 1];
+                    System.arraycopy(current, 0, subscriptions, 0, i);
+                    System.arraycopy(current, i + 1, subscriptions, i, current.length - i - 1);
+
+                    return put(subscription, subscriptions.length > 0 ? subscriptions : null, size - 1);
+                }
+            }
+
+            return this;
+        }
+
+        private Subscription[] get(Subscription subscription) {
+            Map<String, Subscription[]> byId = byVerb.get(subscription.verb);
+
+            return byId != null ? byId.get(subscription.id) : null;
+        }
+
+        /**
+         * @return copy of this table where the subscriptions of the verb and id of subscription
+         * are replaced, only the map of that verb is copied.
+         */
+        private Table put(Subscription subscription, Subscription[] subscriptions, int size) {
+            Map<String, Map<String, Subscription[]>> verbs = new HashMap<String, Map<String, Subscription[]>>(byVerb);
+            Map<String, Subscription[]> current = byVerb.get(subscription.verb);
+            Map<String, Subscription[]> ids = current != null
+                    ? new HashMap<String, Subscription[]>(current) : new HashMap<String, Subscription[]>();
+
+            if (subscriptions != null) {
+                ids.put(subscription.id, subscriptions);
+            } else {
+                ids.remove(subscription.id);
+            }
+
+            if (ids.isEmpty()) {
+                verbs.remove(subscription.verb);
+            } else {
+                verbs.put(subscription.verb, ids);
+            }
+
+            return new Table(verbs, size);
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+import org.json.JSONString;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the headers of a {@link SailsSocket}, serialized once
+ * when the headers are set instead of being merged into every request.
+ *
+ * Requests without headers of their own emit the snapshot as is, otherwise
+ * their headers are written over it, a {@link JSONObject#NULL} request header
+ * removing the socket header.
+ */
+final class SailsHeaders implements JSONString {
+
+    static final SailsHeaders EMPTY = new SailsHeaders(Collections.<String, String>emptyMap());
+
+    private final Map<String, String> headers;
+
+    // "key":"value" of every header, in the order of keys
+    private final String[] keys;
+    private final String[] fragments;
+
+    private final String json;
+
+    /**
+     * @param headers socket headers, null values are skipped
+     */
+    SailsHeaders(Map<String, String> headers) {
+        Map<String, String> copy = new LinkedHashMap<String, String>();
+
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey() != null && header.getValue() != null) {
+                copy.put(header.getKey(), header.getValue());
+            }
+        }
+
+        this.headers = Collections.unmodifiableMap(copy);
+
+        keys = new String[copy.size()];
+        fragments = new String[copy.size()];
+
+        StringBuilder builder = new StringBuilder("{");
+        int i = 0;
+
+        for (Map.Entry<String, String> header : copy.entrySet()) {
+            keys[i] = header.getKey();
+            fragments[i] = JSONObject.quote(header.getKey()) + ':' + JSONObject.quote(header.getValue());
+
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(fragments[i]);
+
+            i++;
+        }
+
+        json = builder.append('}').toString();
+    }
+
+    /**
+     * @return immutable {@link Map} of these headers.
+     */
+    Map<String, String> asMap() {
+        return headers;
+    }
+
+    @Override
+    public String toJSONString() {
+        return json;
+    }
+
+    /**
+     * @param requestHeaders headers of a request, can be null
+     * @return this snapshot if there are no request headers, otherwise the
+     * serialized merge of both.
+     */
+    JSONString overlay(JSONObject requestHeaders) {
+        if (requestHeaders == null || requestHeaders.length() == 0) {
+            return this;
+        }
+
+        StringBuilder builder = new StringBuilder(json.length() + 16 * requestHeaders.length());
+        builder.append('{');
+
+        for (int i = 0; i < keys.length; i++) {
+            if (!requestHeaders.has(keys[i])) {
+                append(builder, fragments[i]);
+            }
+        }
+
+        Iterator<String> requestKeys = requestHeaders.keys();
+        while (requestKeys.hasNext()) {
+            String key = requestKeys.next();
+            Object value = requestHeaders.opt(key);
+
+            if (value != null && !JSONObject.NULL.equals(value)) {
+                append(builder, JSONObject.quote(key) + ':' + JSONObject.valueToString(value));
+            }
+        }
+
+        final String merged = builder.append('}').toString();
+
+        return new JSONString() {
+            @Override
+            public String toJSONString() {
+                return merged;
+            }
+        };
+    }
+
+    /**
+     * @param requestHeaders headers of a request, can be null
+     * @return new {@link JSONObject} merging request headers over these headers.
+     */
+    JSONObject merge(JSONObject requestHeaders) {
+        JSONObject merged = new JSONObject(headers);
+
+        if (requestHeaders != null) {
+            Iterator<String> requestKeys = requestHeaders.keys();
+
+            while (requestKeys.hasNext()) {
+                String key = requestKeys.next();
+                Object value = requestHeaders.opt(key);
+
+                if (value == null || JSONObject.NULL.equals(value)) {
+                    merged.remove(key);
+                } else {
+                    merged.put(key, value);
+                }
+            }
+        }
+
+        return merged;
+    }
+
+    private static void append(StringBuilder builder, String fragment) {
+        if (builder.length() > 1) {
+            builder.append(',');
+        }
+        builder.append(fragment);
+    }
+
+    @Override
+    public String toString() {
+        return json;
+    }
+
+}
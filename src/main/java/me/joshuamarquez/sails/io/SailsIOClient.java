@@ -5,12 +5,15 @@ import io.socket.client.IO;
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class SailsIOClient {
 
     private SailsSocket sailsSocket;
 
+    private SailsSocketPool sailsSocketPool;
+
     // Global Socket url
     private AtomicReference<String> url = new AtomicReference<>();
 
@@ -19,6 +22,12 @@ public class SailsIOClient {
     // Global Socket options
     private AtomicReference<IO.Options> options = new AtomicReference<>(new IO.Options());
 
+    // Global Socket pool settings
+    private AtomicInteger poolSize = new AtomicInteger(2);
+
+    private AtomicReference<SailsSocketPool.Strategy> poolStrategy =
+            new AtomicReference<>(SailsSocketPool.Strategy.LEAST_PENDING);
+
     public SailsIOClient() { /* No args constructor */ }
 
     public SailsSocket socket() {
@@ -47,6 +56,22 @@ public class SailsIOClient {
         return sailsSocket;
     }
 
+    public SailsSocketPool pool() {
+        if (url.get() == null) {
+            throw new RuntimeException("Url must be initialized");
+        }
+
+        boolean resetConnection = shouldResetNextConnection.get()
+                && sailsSocketPool != null && sailsSocketPool.getConnectedCount() == 0;
+
+        if (sailsSocketPool == null || resetConnection) {
+            sailsSocketPool = new SailsSocketPool(url.get(), options.get(), poolSize.get(), poolStrategy.get());
+            shouldResetNextConnection.set(false);
+        }
+
+        return sailsSocketPool;
+    }
+
     /*
      * Get HTTP headers to be sent in every request for all sockets.
      */
@@ -55,6 +80,10 @@ public class SailsIOClient {
             return sailsSocket.getHeaders();
         }
 
+        if (sailsSocketPool != null) {
+            return sailsSocketPool.getHeaders();
+        }
+
         return Collections.emptyMap();
     }
 
@@ -65,6 +94,10 @@ public class SailsIOClient {
         if (sailsSocket != null) {
             sailsSocket.setHeaders(headers);
         }
+
+        if (sailsSocketPool != null) {
+            sailsSocketPool.setHeaders(headers);
+        }
     }
 
     /**
@@ -78,7 +111,7 @@ public class SailsIOClient {
      * @param url to connect socket
      */
     public void setUrl(String url) {
-        if (sailsSocket != null && sailsSocket.isConnected()) {
+        if (isAnySocketConnected()) {
             throw new RuntimeException("Can not change url while socket is connected");
         }
 
@@ -100,11 +133,48 @@ public class SailsIOClient {
      * @param options initial socket {@link IO.Options}
      */
     public void setOptions(IO.Options options) {
-        if (sailsSocket != null && sailsSocket.isConnected()) {
+        if (isAnySocketConnected()) {
             throw new RuntimeException("Can not change options while socket is connected");
         }
 
         if (options != null) this.options.set(options);
     }
 
+    /**
+     * @return number of sockets opened by {@link SailsIOClient#pool()}
+     */
+    public int getPoolSize() {
+        return poolSize.get();
+    }
+
+    /**
+     * @param poolSize number of sockets opened by {@link SailsIOClient#pool()}
+     */
+    public void setPoolSize(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be greater than zero");
+        }
+
+        this.poolSize.set(poolSize);
+    }
+
+    /**
+     * @return {@link SailsSocketPool.Strategy} used by {@link SailsIOClient#pool()}
+     */
+    public SailsSocketPool.Strategy getPoolStrategy() {
+        return poolStrategy.get();
+    }
+
+    /**
+     * @param poolStrategy {@link SailsSocketPool.Strategy} used by {@link SailsIOClient#pool()}
+     */
+    public void setPoolStrategy(SailsSocketPool.Strategy poolStrategy) {
+        if (poolStrategy != null) this.poolStrategy.set(poolStrategy);
+    }
+
+    private boolean isAnySocketConnected() {
+        return (sailsSocket != null && sailsSocket.isConnected())
+                || (sailsSocketPool != null && sailsSocketPool.getConnectedCount() > 0);
+    }
+
 }
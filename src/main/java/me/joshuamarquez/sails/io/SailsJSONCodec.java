@@ -0,0 +1,520 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Default {@link SailsSocketCodec} backed by org.json.
+ *
+ * Params which are not a {@link JSONObject} are converted like
+ * {@link JSONObject#wrap(Object)}: maps, collections, arrays and beans.
+ * {@code byte[]} and {@link ByteBuffer} values are sent as binary attachments,
+ * except inside beans which org.json converts into arrays of numbers.
+ *
+ * Bodies are converted to {@link String}, parsed into a {@link JSONObject}
+ * or {@link JSONArray} when sent as a JSON string, binary bodies can be read
+ * as {@code byte[]} or {@link ByteBuffer}. Other types are populated the other
+ * way round: maps, collections, arrays, numbers, enums and beans, which need a
+ * no-argument constructor and are populated through their public setters.
+ */
+public class SailsJSONCodec implements SailsSocketCodec {
+
+    private static final String KEY_METHOD = "method";
+    private static final String KEY_URL = "url";
+    private static final String KEY_PARAMS = "params";
+    private static final String KEY_HEADERS = "headers";
+
+    @Override
+    public Object encode(SailsSocketRequest request) {
+        JSONObject payload = new JSONObject();
+
+        payload.put(KEY_METHOD, request.getMethod());
+        payload.put(KEY_URL, request.getUrl());
+        payload.put(KEY_PARAMS, toJSON(request.getParamsObject()));
+        payload.put(KEY_HEADERS, request.getSentHeaders());
+
+        return payload;
+    }
+
+    @Override
+    public JWR decode(Object payload) {
+        if (payload instanceof JSONObject) {
+            return new JWR((JSONObject) payload, this);
+        }
+
+        if (payload instanceof String) {
+            return new JWR(new JSONObject((String) payload), this);
+        }
+
+        if (payload == null || JSONObject.NULL.equals(payload)) {
+            return new JWR(new JSONObject(), this);
+        }
+
+        throw new JSONException("Unexpected response " + payload.getClass().getName());
+    }
+
+    @Override
+    public <T> T decodeBody(Object body, Class<T> type) {
+        if (body == null || JSONObject.NULL.equals(body)) {
+            return null;
+        }
+
+        if (type.isInstance(body)) {
+            return type.cast(body);
+        }
+
+        if (type == String.class) {
+            return type.cast(body.toString());
+        }
+
+        if (type == ByteBuffer.class && body instanceof byte[]) {
+            return type.cast(ByteBuffer.wrap((byte[]) body));
+        }
+
+        if (body instanceof String) {
+            if (type == JSONObject.class) {
+                return type.cast(new JSONObject((String) body));
+            }
+
+            if (type == JSONArray.class) {
+                return type.cast(new JSONArray((String) body));
+            }
+        }
+
+        try {
+            @SuppressWarnings("unchecked")
+            T decoded = (T) fromJSON(body, type);
+
+            return decoded;
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Cannot decode " + body.getClass().getName()
+                    + " body into " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Convert a JSON value into type, the reverse of {@link #toJSON(Object)}.
+     *
+     * @param value value to convert
+     * @param type {@link Class} or {@link ParameterizedType} of the result
+     * @return converted value, null if value is null
+     * @throws IllegalArgumentException if value cannot be converted into type
+     */
+    private static Object fromJSON(Object value, Type type) {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            return null;
+        }
+
+        Class<?> raw = rawType(type);
+
+        if (raw.isInstance(value) && !(type instanceof ParameterizedType)) {
+            return value;
+        }
+
+        if (raw == String.class) {
+            return value.toString();
+        }
+
+        if (raw.isPrimitive() || Number.class.isAssignableFrom(raw) || raw == Boolean.class
+                || raw == Character.class) {
+            return toPrimitive(value, raw);
+        }
+
+        if (raw.isEnum()) {
+            return toEnum(value, raw);
+        }
+
+        // JSON sent as a string
+        if (value instanceof String) {
+            value = new JSONTokener((String) value).nextValue();
+        }
+
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+
+            if (raw.isArray()) {
+                Object converted = Array.newInstance(raw.getComponentType(), array.length());
+
+                for (int i = 0; i < array.length(); i++) {
+                    Array.set(converted, i, fromJSON(array.opt(i), raw.getComponentType()));
+                }
+
+                return converted;
+            }
+
+            Collection<Object> collection;
+
+            if (raw.isAssignableFrom(ArrayList.class)) {
+                collection = new ArrayList<Object>(array.length());
+            } else if (raw.isAssignableFrom(LinkedHashSet.class)) {
+                collection = new LinkedHashSet<Object>();
+            } else {
+                throw cannotDecode(value, raw);
+            }
+
+            Type elementType = typeArgument(type, 0);
+
+            for (int i = 0; i < array.length(); i++) {
+                collection.add(fromJSON(array.opt(i), elementType));
+            }
+
+            return collection;
+        }
+
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+
+            if (raw.isAssignableFrom(LinkedHashMap.class)) {
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                Type valueType = typeArgument(type, 1);
+                Iterator<String> keys = object.keys();
+
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    map.put(key, fromJSON(object.opt(key), valueType));
+                }
+
+                return map;
+            }
+
+            if (!raw.isInterface() && !Modifier.isAbstract(raw.getModifiers())
+                    && !Collection.class.isAssignableFrom(raw) && !Map.class.isAssignableFrom(raw)) {
+                return toBean(object, raw);
+            }
+        }
+
+        throw cannotDecode(value, raw);
+    }
+
+    private static Object toPrimitive(Object value, Class<?> type) {
+        if (type == boolean.class || type == Boolean.class) {
+            return value instanceof Boolean ? value : Boolean.valueOf(value.toString());
+        }
+
+        if (type == char.class || type == Character.class) {
+            String text = value.toString();
+
+            if (text.length() != 1) {
+                throw cannotDecode(value, type);
+            }
+
+            return text.charAt(0);
+        }
+
+        Number number;
+
+        try {
+            number = value instanceof Number ? (Number) value : new BigDecimal(value.toString());
+        } catch (NumberFormatException e) {
+            throw cannotDecode(value, type);
+        }
+
+        if (type == int.class || type == Integer.class) {
+            return number.intValue();
+        }
+        if (type == long.class || type == Long.class) {
+            return number.longValue();
+        }
+        if (type == double.class || type == Double.class) {
+            return number.doubleValue();
+        }
+        if (type == float.class || type == Float.class) {
+            return number.floatValue();
+        }
+        if (type == short.class || type == Short.class) {
+            return number.shortValue();
+        }
+        if (type == byte.class || type == Byte.class) {
+            return number.byteValue();
+        }
+        if (type == BigDecimal.class) {
+            return number instanceof BigDecimal ? number : new BigDecimal(number.toString());
+        }
+        if (type == BigInteger.class) {
+            return number instanceof BigInteger ? number : new BigDecimal(number.toString()).toBigInteger();
+        }
+        if (type.isInstance(number)) {
+            return number;
+        }
+
+        throw cannotDecode(value, type);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object toEnum(Object value, Class<?> type) {
+        try {
+            return Enum.valueOf((Class<? extends Enum>) type, value.toString());
+        } catch (IllegalArgumentException e) {
+            throw cannotDecode(value, type);
+        }
+    }
+
+    /**
+     * Populate a new bean through its public setters, a property named like
+     * {@link JSONObject#wrap(Object)} names the matching getter.
+     */
+    private static Object toBean(JSONObject object, Class<?> type) {
+        Object bean;
+
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            bean = constructor.newInstance();
+        } catch (NoSuchMethodException e) {
+            throw cannotDecode(object, type);
+        } catch (InstantiationException e) {
+            throw cannotDecode(object, type);
+        } catch (IllegalAccessException e) {
+            throw cannotDecode(object, type);
+        } catch (InvocationTargetException e) {
+            throw new IllegalArgumentException("Cannot create " + type.getName(), e.getCause());
+        }
+
+        for (Method method : type.getMethods()) {
+            String name = method.getName();
+
+            if (name.length() <= 3 || !name.startsWith("set") || method.getParameterTypes().length != 1
+                    || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+
+            String key = name.substring(3);
+
+            if (key.length() == 1 || !Character.isUpperCase(key.charAt(1))) {
+                key = Character.toLowerCase(key.charAt(0)) + key.substring(1);
+            }
+
+            if (!object.has(key)) {
+                continue;
+            }
+
+            Object value = fromJSON(object.opt(key), method.getGenericParameterTypes()[0]);
+
+            // Leave primitives to their default value
+            if (value == null && method.getParameterTypes()[0].isPrimitive()) {
+                continue;
+            }
+
+            try {
+                method.invoke(bean, value);
+            } catch (IllegalAccessException e) {
+                throw cannotDecode(object, type);
+            } catch (InvocationTargetException e) {
+                throw new IllegalArgumentException("Cannot set " + key + " of " + type.getName(), e.getCause());
+            }
+        }
+
+        return bean;
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+
+        if (type instanceof ParameterizedType) {
+            return rawType(((ParameterizedType) type).getRawType());
+        }
+
+        if (type instanceof WildcardType) {
+            return rawType(((WildcardType) type).getUpperBounds()[0]);
+        }
+
+        return Object.class;
+    }
+
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+
+        return Object.class;
+    }
+
+    private static IllegalArgumentException cannotDecode(Object value, Class<?> type) {
+        return new IllegalArgumentException("Cannot decode " + value.getClass().getName() + " body into "
+                + type.getName());
+    }
+
+    /**
+     * Convert value like {@link JSONObject#wrap(Object)}, keeping binary values as
+     * {@code byte[]} so that Socket.IO sends them as attachments. A {@link JSONObject}
+     * or {@link JSONArray} is only copied when it holds a {@link ByteBuffer}.
+     *
+     * @param value value to convert
+     * @return converted value, null if value is null
+     */
+    static Object toJSON(Object value) {
+        if (value == null || value instanceof byte[] || value instanceof String) {
+            return value;
+        }
+
+        if (value instanceof ByteBuffer) {
+            return toBytes((ByteBuffer) value);
+        }
+
+        if (value instanceof JSONObject) {
+            return toJSON((JSONObject) value);
+        }
+
+        if (value instanceof JSONArray) {
+            return toJSON((JSONArray) value);
+        }
+
+        if (value instanceof Map) {
+            JSONObject object = new JSONObject();
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (entry.getValue() != null) {
+                    object.put(String.valueOf(entry.getKey()), toJSON(entry.getValue()));
+                }
+            }
+
+            return object;
+        }
+
+        if (value instanceof Collection) {
+            JSONArray array = new JSONArray();
+
+            for (Object element : (Collection<?>) value) {
+                array.put(toJSONElement(element));
+            }
+
+            return array;
+        }
+
+        if (value.getClass().isArray()) {
+            JSONArray array = new JSONArray();
+            int length = Array.getLength(value);
+
+            for (int i = 0; i < length; i++) {
+                array.put(toJSONElement(Array.get(value, i)));
+            }
+
+            return array;
+        }
+
+        return JSONObject.wrap(value);
+    }
+
+    private static Object toJSONElement(Object value) {
+        return value == null ? JSONObject.NULL : toJSON(value);
+    }
+
+    private static JSONObject toJSON(JSONObject object) {
+        JSONObject copy = null;
+        Iterator<String> keys = object.keys();
+
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = object.opt(key);
+            Object converted = toJSON(value);
+
+            if (converted != value) {
+                if (copy == null) {
+                    copy = new JSONObject(object, JSONObject.getNames(object));
+                }
+
+                copy.put(key, converted);
+            }
+        }
+
+        return copy != null ? copy : object;
+    }
+
+    private static JSONArray toJSON(JSONArray array) {
+        JSONArray copy = null;
+
+        for (int i = 0; i < array.length(); i++) {
+            Object value = array.opt(i);
+            Object converted = toJSON(value);
+
+            if (converted != value && copy == null) {
+                copy = new JSONArray();
+
+                for (int j = 0; j < i; j++) {
+                    copy.put(array.opt(j));
+                }
+            }
+
+            if (copy != null) {
+                copy.put(converted);
+            }
+        }
+
+        return copy != null ? copy : array;
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Length of value written as JSON, binary attachments count their length
+     * instead of being written as arrays of numbers.
+     */
+    static long estimateSize(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            long size = 1 + Math.max(object.length() - 1, 0) + 1;
+
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                size += JSONObject.quote(key).length() + 1 + estimateSize(object.opt(key));
+            }
+
+            return size;
+        }
+
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            long size = 1 + Math.max(array.length() - 1, 0) + 1;
+
+            for (int i = 0; i < array.length(); i++) {
+                size += estimateSize(array.opt(i));
+            }
+
+            return size;
+        }
+
+        return JSONObject.valueToString(value).length();
+    }
+
+}
@@ -0,0 +1,73 @@
+package me.joshuamarquez.sails.io;
+
+/**
+ * Sink of request and connection metrics, set on a socket by
+ * {@link SailsSocket#setMetrics(SailsMetrics)}. {@link SailsMetricsRecorder}
+ * keeps latency histograms and counters in memory, other sinks can forward
+ * metrics to a monitoring system.
+ *
+ * Routes are request urls without their query string whose numeric, UUID and
+ * hexadecimal id segments are replaced by ":id", e.g. "/user/:id/pets".
+ *
+ * Methods are called from the thread sending, emitting or completing the request
+ * and must return quickly.
+ */
+public interface SailsMetrics {
+
+    /**
+     * A request waits in the request queue.
+     *
+     * @param method HTTP request method
+     * @param route normalized url
+     */
+    void onRequestQueued(String method, String route);
+
+    /**
+     * A request is emitted to Sails. Coalesced requests are emitted once.
+     *
+     * @param method HTTP request method
+     * @param route normalized url
+     */
+    void onRequestEmitted(String method, String route);
+
+    /**
+     * A request got a response, from Sails or the response cache.
+     *
+     * @param method HTTP request method
+     * @param route normalized url
+     * @param statusCode status code of the response, below 200 or 400 or more for a failed request
+     * @param latency nanoseconds from sending the request to its response
+     */
+    void onRequestCompleted(String method, String route, int statusCode, long latency);
+
+    /**
+     * A request timed out before Sails answered.
+     *
+     * @param method HTTP request method
+     * @param route normalized url
+     * @param latency nanoseconds from sending the request to its timeout
+     */
+    void onRequestTimedOut(String method, String route, long latency);
+
+    /**
+     * A request was cancelled, its listener will not be called.
+     *
+     * @param method HTTP request method
+     * @param route normalized url
+     */
+    void onRequestCancelled(String method, String route);
+
+    /**
+     * The socket connected, or reconnected.
+     *
+     * @param latency nanoseconds since {@link SailsSocket#connect()} or the last disconnection
+     */
+    void onConnected(long latency);
+
+    /**
+     * The socket was disconnected.
+     *
+     * @param uptime nanoseconds the socket was connected
+     */
+    void onDisconnected(long uptime);
+}
@@ -0,0 +1,190 @@
+package me.joshuamarquez.sails.io;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link SailsMetrics} keeping counters and {@link SailsLatencyHistogram}s in memory,
+ * by method and route. A recorder can be shared by several sockets, e.g. the sockets
+ * of a {@link SailsSocketPool}.
+ */
+public class SailsMetricsRecorder implements SailsMetrics {
+
+    private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<String, RouteMetrics>();
+
+    private final SailsLatencyHistogram connectLatency = new SailsLatencyHistogram();
+    private final SailsLatencyHistogram uptime = new SailsLatencyHistogram();
+
+    @Override
+    public void onRequestQueued(String method, String route) {
+        routeMetrics(method, route).queued.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestEmitted(String method, String route) {
+        routeMetrics(method, route).emitted.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestCompleted(String method, String route, int statusCode, long latency) {
+        RouteMetrics metrics = routeMetrics(method, route);
+
+        metrics.latency.record(latency);
+
+        if (JWR.isError(statusCode)) {
+            metrics.failed.incrementAndGet();
+        } else {
+            metrics.completed.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onRequestTimedOut(String method, String route, long latency) {
+        routeMetrics(method, route).timedOut.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestCancelled(String method, String route) {
+        routeMetrics(method, route).cancelled.incrementAndGet();
+    }
+
+    @Override
+    public void onConnected(long latency) {
+        connectLatency.record(latency);
+    }
+
+    @Override
+    public void onDisconnected(long uptime) {
+        this.uptime.record(uptime);
+    }
+
+    /**
+     * @param method HTTP request method
+     * @param route normalized url, e.g. "/user/:id"
+     * @return {@link RouteMetrics} of route, null if no request was made to it.
+     */
+    public RouteMetrics getRouteMetrics(String method, String route) {
+        return routes.get(key(method, route));
+    }
+
+    /**
+     * @return {@link RouteMetrics} of every route, by method and route e.g. "get /user/:id".
+     */
+    public Map<String, RouteMetrics> getRouteMetrics() {
+        return Collections.unmodifiableMap(new TreeMap<String, RouteMetrics>(routes));
+    }
+
+    /**
+     * @return {@link SailsLatencyHistogram} of the time taken to connect or reconnect.
+     */
+    public SailsLatencyHistogram getConnectLatency() {
+        return connectLatency;
+    }
+
+    /**
+     * @return {@link SailsLatencyHistogram} of the time connections lasted.
+     */
+    public SailsLatencyHistogram getUptime() {
+        return uptime;
+    }
+
+    /**
+     * Forget every recorded metric.
+     */
+    public void reset() {
+        routes.clear();
+        connectLatency.reset();
+        uptime.reset();
+    }
+
+    private RouteMetrics routeMetrics(String method, String route) {
+        String key = key(method, route);
+        RouteMetrics metrics = routes.get(key);
+
+        if (metrics == null) {
+            RouteMetrics created = new RouteMetrics();
+            metrics = routes.putIfAbsent(key, created);
+
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+
+        return metrics;
+    }
+
+    private static String key(String method, String route) {
+        return method + ' ' + route;
+    }
+
+    /**
+     * Counters and latencies of the requests made to a route.
+     */
+    public static class RouteMetrics {
+
+        private final SailsLatencyHistogram latency = new SailsLatencyHistogram();
+
+        private final AtomicLong queued = new AtomicLong();
+        private final AtomicLong emitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong timedOut = new AtomicLong();
+        private final AtomicLong cancelled = new AtomicLong();
+
+        RouteMetrics() {}
+
+        /**
+         * @return {@link SailsLatencyHistogram} of the time from sending requests to their response.
+         */
+        public SailsLatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return number of requests which waited in the request queue.
+         */
+        public long getQueuedCount() {
+            return queued.get();
+        }
+
+        /**
+         * @return number of requests emitted to Sails.
+         */
+        public long getEmittedCount() {
+            return emitted.get();
+        }
+
+        /**
+         * @return number of requests which got a successful response.
+         */
+        public long getCompletedCount() {
+            return completed.get();
+        }
+
+        /**
+         * @return number of requests which got an error response, including local ones.
+         */
+        public long getFailedCount() {
+            return failed.get();
+        }
+
+        /**
+         * @return number of requests which timed out.
+         */
+        public long getTimedOutCount() {
+            return timedOut.get();
+        }
+
+        /**
+         * @return number of cancelled requests.
+         */
+        public long getCancelledCount() {
+            return cancelled.get();
+        }
+    }
+
+}
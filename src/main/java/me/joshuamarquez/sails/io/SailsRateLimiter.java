@@ -0,0 +1,56 @@
+package me.joshuamarquez.sails.io;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket allowing a burst of permits then a steady rate. Callers never block,
+ * they are told how long to wait until the next permit instead.
+ */
+final class SailsRateLimiter {
+
+    private final double permitsPerNano;
+    private final double burst;
+
+    // Guarded by this
+    private double permits;
+    private long lastRefill;
+
+    /**
+     * @param permitsPerSecond steady rate of permits
+     * @param burst permits available at once, the bucket starts full
+     */
+    SailsRateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be greater than zero");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be greater than zero");
+        }
+
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+
+        permits = burst;
+        lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Take a permit if one is available.
+     *
+     * @return 0 if a permit was taken, otherwise nanoseconds until the next permit.
+     */
+    synchronized long tryAcquire() {
+        long now = System.nanoTime();
+
+        permits = Math.min(burst, permits + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+
+        if (permits >= 1) {
+            permits--;
+            return 0;
+        }
+
+        return Math.max((long) Math.ceil((1 - permits) / permitsPerNano), 1);
+    }
+
+}
@@ -0,0 +1,508 @@
+package me.joshuamarquez.sails.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue holding the requests made while a {@link SailsSocket} is not connected.
+ *
+ * Requests wait in one FIFO lane per {@link SailsSocketRequest.Priority}. Lanes are
+ * polled by smooth weighted round robin, so higher priorities go first most of the
+ * time while lower priorities still make progress.
+ *
+ * The queue is unbounded by default. Once a capacity in requests or bytes is set,
+ * the {@link OverflowPolicy} decides what happens to a request which does not fit.
+ * Requests which are rejected or dropped get a local 503 {@link JWR}.
+ */
+public class SailsRequestQueue {
+
+    public enum OverflowPolicy {
+        /**
+         * Reject the new request.
+         */
+        REJECT,
+
+        /**
+         * Drop the oldest requests of the lowest priority until the new one fits.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Wait until there is room for the new request, reject it after the block timeout.
+         */
+        BLOCK
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+
+    // By priority ordinal, highest priority first
+    private final Lane[] lanes;
+
+    private int count;
+    private long bytes;
+
+    private volatile int maxRequests = Integer.MAX_VALUE;
+    private volatile long maxBytes = Long.MAX_VALUE;
+
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+    private volatile long blockTimeoutMillis;
+
+    SailsRequestQueue() {
+        // Created by SailsSocket
+        SailsSocketRequest.Priority[] priorities = SailsSocketRequest.Priority.values();
+
+        lanes = new Lane[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            lanes[i] = new Lane(priorities[i].getDefaultWeight());
+        }
+    }
+
+    /**
+     * @param priority {@link SailsSocketRequest.Priority}
+     * @return share of polls given to priority relative to the other priorities.
+     */
+    public int getWeight(SailsSocketRequest.Priority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the share of polls given to a priority while several priorities are queued,
+     * e.g. with weights 6, 3 and 1 a bulk request is polled at least once every 10 polls.
+     *
+     * @param priority {@link SailsSocketRequest.Priority}
+     * @param weight share of polls, at least 1
+     * @return {@link SailsRequestQueue}
+     */
+    public SailsRequestQueue setWeight(SailsSocketRequest.Priority priority, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("weight must be greater than zero");
+        }
+
+        lock.lock();
+        try {
+            lanes[priority.ordinal()].weight = weight;
+        } finally {
+            lock.unlock();
+        }
+
+        return this;
+    }
+
+    /**
+     * @return maximum number of queued requests.
+     */
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * @param maxRequests maximum number of queued requests.
+     * @return {@link SailsRequestQueue}
+     */
+    public SailsRequestQueue setMaxRequests(int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("maxRequests must be greater than zero");
+        }
+
+        this.maxRequests = maxRequests;
+        signalNotFull();
+
+        return this;
+    }
+
+    /**
+     * @return maximum size of queued requests, in bytes of their JSON representation.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Bounding the queue in bytes requires estimating the size of every queued request.
+     *
+     * @param maxBytes maximum size of queued requests, in bytes of their JSON representation
+     * plus the length of their binary attachments.
+     * @return {@link SailsRequestQueue}
+     */
+    public SailsRequestQueue setMaxBytes(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be greater than zero");
+        }
+
+        this.maxBytes = maxBytes;
+        signalNotFull();
+
+        return this;
+    }
+
+    /**
+     * @return {@link OverflowPolicy} applied when the queue is full.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @param overflowPolicy {@link OverflowPolicy} applied when the queue is full.
+     * @return {@link SailsRequestQueue}
+     */
+    public SailsRequestQueue setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy cannot be null");
+        }
+
+        this.overflowPolicy = overflowPolicy;
+
+        return this;
+    }
+
+    /**
+     * @return how long {@link OverflowPolicy#BLOCK} waits for room, in milliseconds.
+     */
+    public long getBlockTimeout() {
+        return blockTimeoutMillis;
+    }
+
+    /**
+     * @param timeout how long {@link OverflowPolicy#BLOCK} waits for room
+     * @param unit {@link TimeUnit} of timeout
+     * @return {@link SailsRequestQueue}
+     */
+    public SailsRequestQueue setBlockTimeout(long timeout, TimeUnit unit) {
+        this.blockTimeoutMillis = unit.toMillis(timeout);
+
+        return this;
+    }
+
+    /**
+     * @return number of queued requests.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return estimated size of queued requests in bytes, 0 unless {@link #setMaxBytes(long)} was set.
+     */
+    public long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Add a request at the tail of the queue applying the overflow policy.
+     *
+     * @param request {@link SailsSocketRequest}
+     * @return requests which did not fit, either the new one or the oldest ones.
+     */
+    List<SailsSocketRequest> offer(SailsSocketRequest request) throws InterruptedException {
+        return offer(request, true);
+    }
+
+    /**
+     * Add a request at the tail of the queue applying the overflow policy.
+     *
+     * @param request {@link SailsSocketRequest}
+     * @param block false to reject the request instead of waiting under {@link OverflowPolicy#BLOCK}
+     * @return requests which did not fit, either the new one or the oldest ones.
+     */
+    List<SailsSocketRequest> offer(SailsSocketRequest request, boolean block) throws InterruptedException {
+        long size = maxBytes != Long.MAX_VALUE ? estimateSize(request) : 0;
+        request.setEstimatedSize(size);
+
+        lock.lock();
+        try {
+            if (fits(size)) {
+                add(request);
+                return Collections.emptyList();
+            }
+
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    List<SailsSocketRequest> dropped = new ArrayList<SailsSocketRequest>();
+                    while (!fits(size)) {
+                        dropped.add(removeLowest());
+                    }
+
+                    add(request);
+
+                    return dropped;
+
+                case BLOCK:
+                    if (!block) {
+                        return Collections.singletonList(request);
+                    }
+
+                    long nanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+                    while (!fits(size) && nanos > 0) {
+                        nanos = notFull.awaitNanos(nanos);
+                    }
+
+                    if (fits(size)) {
+                        add(request);
+                        return Collections.emptyList();
+                    }
+
+                    return Collections.singletonList(request);
+
+                default:
+                    return Collections.singletonList(request);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a request which was already admitted once at the tail of the queue, even if
+     * it does not fit, e.g. a request queued again after a disconnection. Never waits.
+     *
+     * @param request {@link SailsSocketRequest}
+     */
+    void requeue(SailsSocketRequest request) {
+        long size = maxBytes != Long.MAX_VALUE ? estimateSize(request) : 0;
+        request.setEstimatedSize(size);
+
+        lock.lock();
+        try {
+            add(request);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return next request by priority or null if the queue is empty.
+     */
+    SailsSocketRequest poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : removeNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean remove(SailsSocketRequest request) {
+        lock.lock();
+        try {
+            if (!request.isQueued()) {
+                return false;
+            }
+
+            Lane lane = lanes[request.getQueuedPriority().ordinal()];
+            unqueue(lane, request);
+            lane.compact();
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every queued request.
+     *
+     * @return removed requests by priority, then in queue order.
+     */
+    List<SailsSocketRequest> clear() {
+        lock.lock();
+        try {
+            List<SailsSocketRequest> removed = new ArrayList<SailsSocketRequest>(count);
+            for (Lane lane : lanes) {
+                for (SailsSocketRequest request : lane.requests) {
+                    if (request.isQueued()) {
+                        request.setQueued(false);
+                        removed.add(request);
+                    }
+                }
+
+                lane.requests.clear();
+                lane.count = 0;
+                lane.current = 0;
+            }
+
+            count = 0;
+            bytes = 0;
+            notFull.signalAll();
+
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return snapshot of queued requests by priority, then in queue order.
+     */
+    List<SailsSocketRequest> toList() {
+        lock.lock();
+        try {
+            List<SailsSocketRequest> queued = new ArrayList<SailsSocketRequest>(count);
+            for (Lane lane : lanes) {
+                for (SailsSocketRequest request : lane.requests) {
+                    if (request.isQueued()) {
+                        queued.add(request);
+                    }
+                }
+            }
+
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A request bigger than maxBytes still fits in an empty queue.
+     */
+    private boolean fits(long size) {
+        return count < maxRequests && (count == 0 || bytes + size <= maxBytes);
+    }
+
+    private void add(SailsSocketRequest request) {
+        SailsSocketRequest.Priority priority = request.getPriority();
+        Lane lane = lanes[priority.ordinal()];
+
+        lane.requests.addLast(request);
+        lane.count++;
+        request.setQueued(true);
+        request.setQueuedPriority(priority);
+        count++;
+        bytes += request.getEstimatedSize();
+    }
+
+    /**
+     * Smooth weighted round robin: every non-empty lane earns its weight, the richest
+     * lane is polled and pays the total. Must only be called while count is greater than zero.
+     */
+    private SailsSocketRequest removeNext() {
+        Lane next = null;
+        int total = 0;
+
+        for (Lane lane : lanes) {
+            if (lane.count == 0) {
+                lane.current = 0;
+                continue;
+            }
+
+            lane.current += lane.weight;
+            total += lane.weight;
+
+            if (next == null || lane.current > next.current) {
+                next = lane;
+            }
+        }
+
+        next.current -= total;
+
+        return removeFirst(next);
+    }
+
+    /**
+     * Must only be called while count is greater than zero.
+     */
+    private SailsSocketRequest removeLowest() {
+        for (int i = lanes.length - 1; i > 0; i--) {
+            if (lanes[i].count > 0) {
+                return removeFirst(lanes[i]);
+            }
+        }
+
+        return removeFirst(lanes[0]);
+    }
+
+    /**
+     * Must only be called while lane count is greater than zero.
+     */
+    private SailsSocketRequest removeFirst(Lane lane) {
+        SailsSocketRequest request = lane.requests.removeFirst();
+        while (!request.isQueued()) {
+            request = lane.requests.removeFirst();
+        }
+
+        unqueue(lane, request);
+
+        return request;
+    }
+
+    private void unqueue(Lane lane, SailsSocketRequest request) {
+        request.setQueued(false);
+        lane.count--;
+        count--;
+        bytes -= request.getEstimatedSize();
+        notFull.signalAll();
+    }
+
+    private void signalNotFull() {
+        lock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long estimateSize(SailsSocketRequest request) {
+        return SailsJSONCodec.estimateSize(request.getCodec().encode(request));
+    }
+
+    private static class Lane {
+
+        // Removed requests stay in the deque until they are polled or compacted,
+        // so removing a request by reference is O(1)
+        final ArrayDeque<SailsSocketRequest> requests = new ArrayDeque<SailsSocketRequest>();
+
+        int count;
+        int weight;
+
+        // Smooth weighted round robin credit
+        int current;
+
+        Lane(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Compact once removed requests outnumber queued ones.
+         */
+        void compact() {
+            int removed = requests.size() - count;
+
+            if (removed > 64 && removed > count) {
+                Iterator<SailsSocketRequest> iterator = requests.iterator();
+                while (iterator.hasNext()) {
+                    if (!iterator.next().isQueued()) {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+    }
+
+}
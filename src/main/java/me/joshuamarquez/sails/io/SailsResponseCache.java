@@ -0,0 +1,342 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of GET responses following HTTP caching semantics, set on a socket
+ * by {@link SailsSocket#setResponseCache(SailsResponseCache)}.
+ *
+ * Successful responses are stored unless their Cache-Control forbids it, and are
+ * fresh for their Cache-Control max-age or until their Expires date. Fresh responses
+ * are served without reaching Sails. Stale responses having an ETag or Last-Modified
+ * header are revalidated by sending If-None-Match or If-Modified-Since, a 304 response
+ * serves the cached one. Requests with a Cache-Control: no-cache header always reach
+ * Sails. A successful POST, PUT or DELETE request evicts the cached responses of its url.
+ *
+ * Cached {@link JWR}s are shared by every request they are served to, their body
+ * must not be modified.
+ */
+public class SailsResponseCache {
+
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final long maxBytes;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxBytes maximum size of cached responses, in bytes of their JSON representation.
+     */
+    public SailsResponseCache(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be greater than zero");
+        }
+
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return estimated size of cached responses in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return number of cached responses.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of requests served by a fresh or revalidated response.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of requests which got a new response from Sails.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of responses evicted to stay within the size bound.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Remove every cached response.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Look up the response of a GET request. A stale response with validators
+     * makes the request conditional.
+     *
+     * @param request {@link SailsSocketRequest} about to be sent
+     * @return fresh cached response, null if the request must be sent.
+     */
+    JWR lookup(SailsSocketRequest request) {
+        String key = request.requestKey();
+        request.setCacheKey(key);
+
+        // Requests with side effects on Sails, e.g. subscribing to records, must reach it
+        JSONObject headers = request.getHeaders();
+
+        if (headers != null && headers.optString("Cache-Control").toLowerCase(Locale.US).contains("no-cache")) {
+            return null;
+        }
+
+        Entry entry;
+
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isFresh(System.currentTimeMillis())) {
+            hits.incrementAndGet();
+            return entry.response;
+        }
+
+        if (entry.etag != null) {
+            request.putHeader("If-None-Match", entry.etag);
+        }
+
+        if (entry.lastModified != null) {
+            request.putHeader("If-Modified-Since", entry.lastModified);
+        }
+
+        request.setStaleEntry(entry);
+
+        return null;
+    }
+
+    /**
+     * Store or revalidate the cached response of a GET request.
+     *
+     * @param request {@link SailsSocketRequest} looked up by {@link #lookup(SailsSocketRequest)}
+     * @param response {@link JWR} sent by Sails
+     * @return response to deliver, the cached one if Sails answered 304.
+     */
+    JWR update(SailsSocketRequest request, JWR response) {
+        Entry stale = request.getStaleEntry();
+
+        if (response.getStatusCode() == 304 && stale != null) {
+            hits.incrementAndGet();
+
+            // Headers of the 304 update the freshness of the cached response
+            Entry revalidated = new Entry(stale.response, stale.size,
+                    hasFreshness(response) ? response : stale.response);
+            put(request.getCacheKey(), revalidated);
+
+            return stale.response;
+        }
+
+        misses.incrementAndGet();
+
+        if (response.getStatusCode() == 200) {
+            Entry entry = new Entry(response, SailsJSONCodec.estimateSize(response.getJsonObjectResponse()), response);
+
+            if (entry.isStorable()) {
+                response.setShared(true);
+                put(request.getCacheKey(), entry);
+            } else {
+                remove(request.getCacheKey());
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * Remove the cached responses of url, after it was modified.
+     *
+     * @param url url of a POST, PUT or DELETE request
+     */
+    synchronized void invalidate(String url) {
+        // Keys start with the lowercase method, whatever the case requested
+        String prefix = SailsSocketRequest.METHOD_GET + ' ' + url + '\n';
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+
+            if (entry.getKey().startsWith(prefix)) {
+                bytes -= entry.getValue().size;
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        if (entry.size > maxBytes) {
+            remove(key);
+            return;
+        }
+
+        Entry previous = entries.put(key, entry);
+        bytes += entry.size - (previous != null ? previous.size : 0);
+
+        Iterator<Entry> eldest = entries.values().iterator();
+
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().size;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry previous = entries.remove(key);
+
+        if (previous != null) {
+            bytes -= previous.size;
+        }
+    }
+
+    private static boolean hasFreshness(JWR response) {
+        return header(response, "Cache-Control") != null || header(response, "Expires") != null;
+    }
+
+    /**
+     * @return value of a header, matching its name ignoring case.
+     */
+    private static String header(JWR response, String name) {
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Cached response with its freshness and validators.
+     */
+    static final class Entry {
+
+        private final JWR response;
+        private final long size;
+
+        private final String etag;
+        private final String lastModified;
+
+        private final boolean noStore;
+        private final long expiresAt;
+
+        /**
+         * @param response cached response
+         * @param size estimated size of response
+         * @param headersSource response whose headers set freshness, response itself unless revalidated
+         */
+        Entry(JWR response, long size, JWR headersSource) {
+            this.response = response;
+            this.size = size;
+
+            etag = header(response, "ETag");
+            lastModified = header(response, "Last-Modified");
+
+            long now = System.currentTimeMillis();
+            long lifetime = 0;
+            boolean noStore = false;
+
+            String cacheControl = header(headersSource, "Cache-Control");
+            String expires = header(headersSource, "Expires");
+
+            if (cacheControl != null) {
+                for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+                    directive = directive.trim();
+
+                    if (directive.equals("no-store")) {
+                        noStore = true;
+                    } else if (directive.equals("no-cache")) {
+                        lifetime = 0;
+                        expires = null;
+                        break;
+                    } else if (directive.startsWith("max-age=")) {
+                        lifetime = parseSeconds(directive.substring("max-age=".length())) * 1000;
+                        expires = null;
+                    }
+                }
+            }
+
+            if (expires != null) {
+                lifetime = parseDate(expires) - now;
+            }
+
+            String age = header(headersSource, "Age");
+            if (age != null) {
+                lifetime -= parseSeconds(age) * 1000;
+            }
+
+            this.noStore = noStore;
+            this.expiresAt = now + Math.max(lifetime, 0);
+        }
+
+        boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+
+        /**
+         * @return whether this response is worth caching: allowed, and either
+         * fresh for a while or able to be revalidated.
+         */
+        boolean isStorable() {
+            return !noStore && (isFresh(System.currentTimeMillis()) || etag != null || lastModified != null);
+        }
+
+        private static long parseSeconds(String value) {
+            try {
+                return Math.max(Long.parseLong(value.trim()), 0);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        private static long parseDate(String value) {
+            SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+            try {
+                return format.parse(value.trim()).getTime();
+            } catch (ParseException e) {
+                // Invalid dates mean already expired
+                return 0;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+package me.joshuamarquez.sails.io;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends idempotent requests again when Sails answers with a transient error or they
+ * time out, set on a socket by {@link SailsSocket#setRetryPolicy(SailsRetryPolicy)}.
+ *
+ * Attempts are spaced by an exponential backoff with jitter, so that clients failing
+ * together do not retry together. Only requests for which {@link SailsSocketRequest#isIdempotent()}
+ * is true are retried. With a retry policy the request timeout applies to each attempt.
+ *
+ * A retry budget bounds retries to a ratio of the requests sent, plus a few per second,
+ * so that retries cannot multiply the load of an overloaded server. A policy can be shared
+ * by several sockets, e.g. by a {@link SailsSocketPool}, sharing its budget.
+ */
+public class SailsRetryPolicy {
+
+    private volatile int maxAttempts = 3;
+
+    // Milliseconds
+    private volatile long initialBackoff = 100;
+    private volatile long maxBackoff = 5000;
+
+    private volatile Set<Integer> retryStatusCodes = Collections.unmodifiableSet(
+            new HashSet<Integer>(Arrays.asList(502, 503, 504)));
+
+    private volatile boolean retryOnTimeout = true;
+
+    // Guarded by this
+    private double budgetRatio = 0.2;
+    private double budgetTokens;
+    private SailsRateLimiter minRetries = new SailsRateLimiter(10, 10);
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts maximum times a request is sent, including the first one, 3 by default
+     * @return {@link SailsRetryPolicy}
+     */
+    public SailsRetryPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be greater than zero");
+        }
+
+        this.maxAttempts = maxAttempts;
+
+        return this;
+    }
+
+    /**
+     * @return milliseconds before the first retry, before jitter.
+     */
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * @return maximum milliseconds between two attempts.
+     */
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * Set the backoff, doubled after each attempt up to max. Each delay is randomized
+     * between half and all of its value. 100 milliseconds up to 5 seconds by default.
+     *
+     * @param initial delay before the first retry
+     * @param max maximum delay between two attempts
+     * @param unit {@link TimeUnit} of initial and max
+     * @return {@link SailsRetryPolicy}
+     */
+    public SailsRetryPolicy setBackoff(long initial, long max, TimeUnit unit) {
+        if (initial < 0) {
+            throw new IllegalArgumentException("initial cannot be negative");
+        }
+        if (max < initial) {
+            throw new IllegalArgumentException("max cannot be less than initial");
+        }
+
+        this.initialBackoff = unit.toMillis(initial);
+        this.maxBackoff = unit.toMillis(max);
+
+        return this;
+    }
+
+    public Set<Integer> getRetryStatusCodes() {
+        return retryStatusCodes;
+    }
+
+    /**
+     * @param statusCodes status codes retried, 502, 503 and 504 by default
+     * @return {@link SailsRetryPolicy}
+     */
+    public SailsRetryPolicy setRetryStatusCodes(int... statusCodes) {
+        Set<Integer> codes = new HashSet<Integer>();
+
+        for (int statusCode : statusCodes) {
+            codes.add(statusCode);
+        }
+
+        this.retryStatusCodes = Collections.unmodifiableSet(codes);
+
+        return this;
+    }
+
+    public boolean isRetryOnTimeout() {
+        return retryOnTimeout;
+    }
+
+    /**
+     * @param retryOnTimeout whether requests timing out are retried, true by default
+     * @return {@link SailsRetryPolicy}
+     */
+    public SailsRetryPolicy setRetryOnTimeout(boolean retryOnTimeout) {
+        this.retryOnTimeout = retryOnTimeout;
+
+        return this;
+    }
+
+    /**
+     * Bound retries to a ratio of the requests sent, e.g. 0.2 allows one retry for every
+     * five requests, plus minRetriesPerSecond whatever the traffic. Unused retries accumulate
+     * up to the ratio of 1000 requests. 0.2 and 10 per second by default.
+     *
+     * @param ratio retries allowed per request sent
+     * @param minRetriesPerSecond retries allowed per second beyond the ratio
+     * @return {@link SailsRetryPolicy}
+     */
+    public synchronized SailsRetryPolicy setRetryBudget(double ratio, double minRetriesPerSecond) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("ratio cannot be negative");
+        }
+        if (minRetriesPerSecond < 0) {
+            throw new IllegalArgumentException("minRetriesPerSecond cannot be negative");
+        }
+
+        this.budgetRatio = ratio;
+        this.budgetTokens = Math.min(budgetTokens, ratio * 1000);
+        this.minRetries = minRetriesPerSecond > 0
+                ? new SailsRateLimiter(minRetriesPerSecond, (int) Math.max(1, Math.ceil(minRetriesPerSecond))) : null;
+
+        return this;
+    }
+
+    public synchronized double getRetryBudgetRatio() {
+        return budgetRatio;
+    }
+
+    /**
+     * @return number of requests sent again.
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * @return number of retries denied as the retry budget was exhausted.
+     */
+    public long getBudgetExhaustedCount() {
+        return exhausted.get();
+    }
+
+    /**
+     * @return whether response is a transient failure worth another attempt. Local responses
+     * are final, e.g. a disconnect or an open circuit breaker, except timeouts.
+     */
+    boolean isRetryable(JWR response) {
+        if (response.isLocal()) {
+            return response.getStatusCode() == 408 && retryOnTimeout;
+        }
+
+        return retryStatusCodes.contains(response.getStatusCode());
+    }
+
+    /**
+     * @param attempts times the request was sent
+     * @return milliseconds to wait before the next attempt.
+     */
+    long backoff(int attempts) {
+        long max = maxBackoff;
+        long delay = initialBackoff;
+
+        for (int i = 1; i < attempts && delay < max; i++) {
+            delay *= 2;
+        }
+
+        delay = Math.min(delay, max);
+
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay - delay / 2 + 1);
+    }
+
+    /**
+     * Credit the budget with a request sent.
+     */
+    synchronized void deposit() {
+        budgetTokens = Math.min(budgetTokens + budgetRatio, budgetRatio * 1000);
+    }
+
+    /**
+     * Take a retry from the budget.
+     *
+     * @return false if the budget is exhausted.
+     */
+    boolean withdraw() {
+        boolean allowed;
+
+        synchronized (this) {
+            if (budgetTokens >= 1) {
+                budgetTokens--;
+                allowed = true;
+            } else {
+                allowed = minRetries != null && minRetries.tryAcquire() == 0;
+            }
+        }
+
+        if (allowed) {
+            retries.incrementAndGet();
+        } else {
+            exhausted.incrementAndGet();
+        }
+
+        return allowed;
+    }
+
+}
@@ -0,0 +1,109 @@
+package me.joshuamarquez.sails.io;
+
+/**
+ * Normalizes request urls into routes so that requests to the same
+ * Sails action share their metrics, e.g. "/user/42?populate=pets"
+ * becomes "/user/:id".
+ */
+final class SailsRoute {
+
+    static final String ID = ":id";
+
+    private SailsRoute() { /* No instances */ }
+
+    /**
+     * Strip the query string and fragment then replace identifiers by {@link #ID}:
+     * numbers, UUIDs and hexadecimal ids of 16 characters or more (e.g. MongoDB ids).
+     *
+     * @param url request url
+     * @return normalized route, url itself if there is nothing to normalize.
+     */
+    static String normalize(String url) {
+        if (url == null || url.isEmpty()) {
+            return "/";
+        }
+
+        int end = url.length();
+        for (int i = 0; i < end; i++) {
+            char c = url.charAt(i);
+
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+
+        StringBuilder route = null;
+        int start = 0;
+
+        while (start <= end) {
+            int slash = url.indexOf('/', start);
+            int segmentEnd = slash == -1 || slash > end ? end : slash;
+
+            if (isIdentifier(url, start, segmentEnd)) {
+                if (route == null) {
+                    route = new StringBuilder(end).append(url, 0, start);
+                }
+                route.append(ID);
+            } else if (route != null) {
+                route.append(url, start, segmentEnd);
+            }
+
+            if (segmentEnd == end) {
+                break;
+            }
+
+            if (route != null) {
+                route.append('/');
+            }
+            start = segmentEnd + 1;
+        }
+
+        if (route != null) {
+            return route.toString();
+        }
+
+        return end == url.length() ? url : url.substring(0, end);
+    }
+
+    private static boolean isIdentifier(String url, int start, int end) {
+        int length = end - start;
+
+        if (length == 0) {
+            return false;
+        }
+
+        boolean digits = true;
+        int dashes = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+
+            if (c == '-') {
+                digits = false;
+                dashes++;
+            } else if (c < '0' || c > '9') {
+                digits = false;
+
+                if ((c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+                    return false;
+                }
+            }
+        }
+
+        // Only digits, hex digits and dashes get this far
+        if (digits) {
+            return true;
+        }
+
+        // UUID: 8-4-4-4-12
+        if (dashes == 4) {
+            return length == 36 && url.charAt(start + 8) == '-' && url.charAt(start + 13) == '-'
+                    && url.charAt(start + 18) == '-' && url.charAt(start + 23) == '-';
+        }
+
+        // Hex, e.g. a MongoDB ObjectId
+        return dashes == 0 && length >= 16;
+    }
+
+}
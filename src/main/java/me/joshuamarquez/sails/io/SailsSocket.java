@@ -7,11 +7,20 @@ import io.socket.client.Socket;
 import io.socket.emitter.Emitter;
 
 import io.socket.engineio.client.Transport;
+import io.socket.thread.EventThread;
 import org.json.JSONObject;
 
 import java.net.URISyntaxException;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,10 +37,84 @@ public class SailsSocket {
 
     private boolean isConnecting;
 
-    // Socket headers
-    private Map<String, String> headers = Collections.emptyMap();
+    // Socket headers, replaced as a whole by setHeaders
+    private volatile SailsHeaders headers = SailsHeaders.EMPTY;
 
-    private Set<SailsSocketRequest> requestQueue;
+    private SailsRequestQueue requestQueue;
+
+    // Encodes requests and decodes responses
+    private volatile SailsSocketCodec codec = new SailsJSONCodec();
+
+    // Default milliseconds to wait for a response, 0 waits forever
+    private volatile long requestTimeout;
+
+    // Requests queued or awaiting a response from Sails
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+
+    // Queued requests emitted per second when draining and their burst, 0 for no limit
+    private volatile double drainRate;
+    private volatile int drainBurst;
+
+    // Maximum milliseconds to wait before draining
+    private volatile long drainJitter;
+
+    private volatile DrainListener drainListener;
+
+    // Maximum emitted requests awaiting a response, 0 for no limit
+    private volatile int maxInFlight;
+
+    // Emitted requests awaiting a response
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    // Emitted requests awaiting a response, failed or queued again on disconnection
+    private final Set<SailsSocketRequest> awaitingResponse =
+            Collections.newSetFromMap(new ConcurrentHashMap<SailsSocketRequest, Boolean>());
+
+    private volatile DisconnectPolicy disconnectPolicy = DisconnectPolicy.REQUEUE_IDEMPOTENT;
+
+    // Sends failed idempotent requests again, null if disabled
+    private volatile SailsRetryPolicy retryPolicy;
+
+    // Fails requests to failing routes fast, null if disabled
+    private volatile SailsCircuitBreaker circuitBreaker;
+
+    // Set while the request queue is drained, new requests are queued behind
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    // Requests emitted by the current or last drain
+    private final AtomicInteger drainedRequests = new AtomicInteger();
+
+    // Caches GET responses, null if disabled
+    private volatile SailsResponseCache responseCache;
+
+    // Whether identical concurrent GET requests share one emit
+    private volatile boolean coalesceGets;
+
+    // Coalesced GET requests awaiting a response, by coalescing key
+    private final Map<String, Flight> flights = new HashMap<String, Flight>();
+
+    // Records request and connection metrics, null if disabled
+    private volatile SailsMetrics metrics;
+
+    // System.nanoTime() when connecting started and when connected, 0 if unknown
+    private volatile long connectingSince;
+    private volatile long connectedSince;
+
+    // Runs listeners, null to run them on the Socket.IO event thread
+    private volatile SailsCallbackExecutor callbackExecutor;
+
+    // Created on first use by getEventRouter()
+    private volatile SailsEventRouter eventRouter;
+
+    // Created on first use by getSubscriptions()
+    private volatile SailsSubscriptions subscriptions;
+
+    // Listeners bound by on() and the wrappers registered on the socket in their place, by event
+    private final Map<String, Map<Emitter.Listener, Emitter.Listener>> eventListeners =
+            new HashMap<String, Map<Emitter.Listener, Emitter.Listener>>();
+
+    // Requests queued or awaiting a response from Sails, by tag
+    private final Map<String, Set<SailsSocketRequest>> requestsByTag = new HashMap<String, Set<SailsSocketRequest>>();
 
     public SailsSocket(String url) {
         this(url, null);
@@ -55,7 +138,8 @@ public class SailsSocket {
         String sdkVersionQuery = SDK_VERSION_KEY + "=" + SDK_VERSION_VALUE;
         if (options.query == null) {
             options.query = sdkVersionQuery;
-        } else {
+        } else if (!options.query.contains(SDK_VERSION_KEY)) {
+            // Options may be shared by several sockets, e.g. in a SailsSocketPool
             options.query = options.query + "&" + sdkVersionQuery;
         }
 
@@ -65,7 +149,7 @@ public class SailsSocket {
             throw new RuntimeException(e);
         }
 
-        requestQueue = new HashSet<SailsSocketRequest>();
+        requestQueue = new SailsRequestQueue();
 
         Emitter.Listener clearRequestQueue = new Emitter.Listener() {
             @Override
@@ -75,24 +159,57 @@ public class SailsSocket {
         };
         socket.on(Socket.EVENT_CONNECT, clearRequestQueue);
         socket.on(Socket.EVENT_RECONNECT, clearRequestQueue);
+
+        socket.on(Socket.EVENT_CONNECT, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                long now = System.nanoTime();
+                long since = connectingSince;
+                connectedSince = now;
+
+                SailsMetrics metrics = SailsSocket.this.metrics;
+
+                if (metrics != null && since != 0) {
+                    metrics.onConnected(now - since);
+                }
+            }
+        }).on(Socket.EVENT_DISCONNECT, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                long now = System.nanoTime();
+                long since = connectedSince;
+                // Reconnection starts now
+                connectingSince = now;
+                connectedSince = 0;
+
+                abandonInFlight();
+
+                SailsMetrics metrics = SailsSocket.this.metrics;
+
+                if (metrics != null && since != 0) {
+                    metrics.onDisconnected(now - since);
+                }
+            }
+        });
     }
 
     /**
      * Get headers to be sent in every request for this socket.
      */
     public Map<String, String> getHeaders() {
-        return headers;
+        return headers.asMap();
     }
 
     /**
      * Set headers to be sent in every request for this socket.
+     * Headers are copied, later changes to the given map are not sent.
      *
      * @param headers socket request headers
      * @return {@link SailsSocket}
      */
     public SailsSocket setHeaders(Map<String, String> headers) {
         if (headers != null && !headers.isEmpty()) {
-            this.headers = headers;
+            this.headers = new SailsHeaders(headers);
         }
 
         return this;
@@ -127,21 +244,115 @@ public class SailsSocket {
     }
 
     /**
-     * Drains request queue sending each
-     * request to {@link this.emitFrom(Socket, SailsSocketRequest)}
+     * Start draining the request queue unless a drain is running, after
+     * a random delay up to the drain jitter.
      */
     private void drainRequestQueue() {
-        synchronized (requestQueue) {
-            if (!requestQueue.isEmpty()) {
-                logger.fine("Draining request queue");
+        if (requestQueue.isEmpty() || !draining.compareAndSet(false, true)) {
+            return;
+        }
+
+        logger.fine("Draining request queue");
+        drainedRequests.set(0);
+
+        final SailsRateLimiter limiter = drainRate > 0 ? new SailsRateLimiter(drainRate, drainBurst) : null;
+        Runnable drain = new Runnable() {
+            @Override
+            public void run() {
+                drainRequestQueue(limiter, this);
+            }
+        };
 
-                for (SailsSocketRequest request : requestQueue) {
-                    emitFrom(socket, request);
+        long jitter = drainJitter;
+
+        if (jitter > 0) {
+            SailsTimer.shared().schedule(onEventThread(drain), ThreadLocalRandom.current().nextLong(jitter + 1),
+                    TimeUnit.MILLISECONDS);
+        } else {
+            drain.run();
+        }
+    }
+
+    /**
+     * Send queued requests to {@link #emitFrom(Socket, SailsSocketRequest)} as fast as
+     * the limiter allows, resuming drain from the event thread once the shared timer
+     * says permits are available. The queue lock is only held to poll each request.
+     *
+     * @param limiter {@link SailsRateLimiter} pacing the drain, null for no limit
+     * @param drain {@link Runnable} resuming this drain
+     */
+    private void drainRequestQueue(SailsRateLimiter limiter, Runnable drain) {
+        while (true) {
+            if (!isConnected()) {
+                // Resumed by the next connection
+                draining.set(false);
+                return;
+            }
+
+            if (!canDrain()) {
+                draining.set(false);
+
+                // A request may have been queued, or a response received, before draining was cleared
+                if (!canDrain() || !draining.compareAndSet(false, true)) {
+                    break;
+                }
+            }
+
+            if (limiter != null) {
+                long wait = limiter.tryAcquire();
+
+                if (wait > 0) {
+                    SailsTimer.shared().schedule(onEventThread(drain), wait, TimeUnit.NANOSECONDS);
+                    return;
                 }
+            }
 
-                requestQueue.clear();
+            SailsSocketRequest request = requestQueue.poll();
+
+            if (request != null && !request.isFinished()) {
+                emitFrom(socket, request);
+
+                int drained = drainedRequests.incrementAndGet();
+                DrainListener listener = drainListener;
+
+                if (listener != null) {
+                    listener.onDrainProgress(drained, requestQueue.size());
+                }
             }
         }
+
+        DrainListener listener = drainListener;
+
+        // Otherwise resumed once an emitted request gets its response
+        if (listener != null && requestQueue.isEmpty()) {
+            listener.onDrainComplete(drainedRequests.get());
+        }
+    }
+
+    private boolean canDrain() {
+        return !requestQueue.isEmpty() && !isWindowFull();
+    }
+
+    /**
+     * Wrap a task scheduled on the shared timer so that it runs on the event thread,
+     * timer tasks must be short.
+     *
+     * @param task {@link Runnable} to run on the event thread
+     * @return {@link Runnable} to schedule
+     */
+    private static Runnable onEventThread(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                EventThread.nextTick(task);
+            }
+        };
+    }
+
+    private boolean isWindowFull() {
+        int max = maxInFlight;
+
+        return max > 0 && inFlightRequests.get() >= max;
     }
 
     /**
@@ -162,6 +373,7 @@ public class SailsSocket {
      */
     public SailsSocket connect() {
         isConnecting = true;
+        connectingSince = System.nanoTime();
 
         socket.connect();
 
@@ -211,6 +423,7 @@ public class SailsSocket {
         if (isConnected()) {
             throw new RuntimeException("Cannot connect- socket is already connected");
         }
+        connectingSince = System.nanoTime();
         socket.connect();
 
         return this;
@@ -240,191 +453,1545 @@ public class SailsSocket {
     }
 
     /**
-     * Returns Socket.IO instance
+     * Returns the queue holding requests made while this socket is not connected.
+     * Its capacity and overflow policy can be configured.
      *
-     * @return {@link Socket}
+     * @return {@link SailsRequestQueue}
      */
-    public Socket getSocket() {
-        return socket;
+    public SailsRequestQueue getRequestQueue() {
+        return requestQueue;
     }
 
     /**
+     * @return default milliseconds to wait for a response, 0 if requests wait forever.
+     */
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Set how long requests wait for a response unless they set their own timeout.
+     * Once elapsed the listener gets a local 408 {@link JWR}.
      *
-     * Chainable method to unbind an event to the socket.
-     *
-     * @param  event event name
-     * @param  fn {@link Emitter.Listener event handler listener
+     * @param timeout time to wait, 0 to wait forever
+     * @param unit {@link TimeUnit} of timeout
      * @return {@link SailsSocket}
      */
-    public SailsSocket on(String event, Emitter.Listener fn) {
-        socket.on(event, fn);
+    public SailsSocket setRequestTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout cannot be negative");
+        }
+
+        this.requestTimeout = unit.toMillis(timeout);
 
         return this;
     }
 
     /**
+     * @return {@link SailsSocketCodec} encoding requests and decoding responses.
+     */
+    public SailsSocketCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Set the codec encoding requests and decoding responses of this socket,
+     * {@link SailsJSONCodec} by default.
      *
-     * Chainable method to bind an event to the socket.
-     *
-     * @param  event event name
-     * @param  fn {@link Emitter.Listener event handler listener
+     * @param codec {@link SailsSocketCodec}
      * @return {@link SailsSocket}
      */
-    public SailsSocket off(String event, Emitter.Listener fn) {
-        socket.off(event, fn);
+    public SailsSocket setCodec(SailsSocketCodec codec) {
+        if (codec == null) {
+            throw new IllegalArgumentException("codec cannot be null");
+        }
+
+        this.codec = codec;
 
         return this;
     }
 
     /**
-     * Simulate a GET request to sails
+     * Pace the replay of queued requests once connected, so that many clients
+     * reconnecting at once do not flood Sails. Requests made while draining are
+     * queued behind the queued ones. No limit by default.
      *
-     * @param tag Set a tag on this request. Can be used to cancel all requests with this
-     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
-     * @param url {@link String} destination URL
-     * @param params {@link JSONObject} parameters to send with the request, can be null.
-     * @param listener {@link SailsSocketResponse.Listener} listener to call when finished
+     * @param requestsPerSecond queued requests emitted per second, 0 for no limit
+     * @param burst queued requests which can be emitted at once
+     * @return {@link SailsSocket}
      */
-    public SailsSocket get(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
-        request(tag, METHOD_GET, url, params, null, listener);
+    public SailsSocket setDrainRate(double requestsPerSecond, int burst) {
+        if (requestsPerSecond < 0) {
+            throw new IllegalArgumentException("requestsPerSecond cannot be negative");
+        }
+        if (requestsPerSecond > 0 && burst < 1) {
+            throw new IllegalArgumentException("burst must be greater than zero");
+        }
+
+        this.drainBurst = burst;
+        this.drainRate = requestsPerSecond;
 
         return this;
     }
 
     /**
-     * Simulate a POST request to sails
+     * @return queued requests emitted per second when draining, 0 for no limit.
+     */
+    public double getDrainRate() {
+        return drainRate;
+    }
+
+    /**
+     * @return queued requests which can be emitted at once when draining.
+     */
+    public int getDrainBurst() {
+        return drainBurst;
+    }
+
+    /**
+     * Wait a random delay up to jitter before draining the request queue.
      *
-     * @param tag Set a tag on this request. Can be used to cancel all requests with this
-     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
-     * @param url {@link String} destination URL
-     * @param params {@link JSONObject} parameters to send with the request, can be null.
-     * @param listener {@link SailsSocketResponse.Listener} listener to call when finished
+     * @param jitter maximum delay, 0 to drain at once
+     * @param unit {@link TimeUnit} of jitter
+     * @return {@link SailsSocket}
      */
-    public SailsSocket post(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
-        request(tag, METHOD_POST, url, params, null, listener);
+    public SailsSocket setDrainJitter(long jitter, TimeUnit unit) {
+        if (jitter < 0) {
+            throw new IllegalArgumentException("jitter cannot be negative");
+        }
+
+        this.drainJitter = unit.toMillis(jitter);
 
         return this;
     }
 
     /**
-     * Simulate a PUT request to sails
-     *
-     * @param tag Set a tag on this request. Can be used to cancel all requests with this
-     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
-     * @param url {@link String} destination URL
-     * @param params {@link JSONObject} parameters to send with the request, can be null.
-     * @param listener {@link SailsSocketResponse.Listener} listener to call when finished
+     * @return maximum milliseconds to wait before draining the request queue.
      */
-    public SailsSocket put(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
-        request(tag, METHOD_PUT, url, params, null, listener);
+    public long getDrainJitter() {
+        return drainJitter;
+    }
+
+    /**
+     * @param drainListener {@link DrainListener} notified of drain progress, null to remove it
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket setDrainListener(DrainListener drainListener) {
+        this.drainListener = drainListener;
 
         return this;
     }
 
     /**
-     * Simulate a DELETE request to sails
+     * @return whether queued requests are being replayed.
+     */
+    public boolean isDraining() {
+        return draining.get();
+    }
+
+    /**
+     * @return number of queued requests emitted by the current or last drain.
+     */
+    public int getDrainedRequestCount() {
+        return drainedRequests.get();
+    }
+
+    /**
+     * Limit the requests emitted and awaiting a response. Requests over the limit wait
+     * in the request queue, where {@link SailsSocketRequest.Priority} decides which goes
+     * next, so bulk traffic cannot hold up interactive requests on the wire. No limit by default.
      *
-     * @param tag Set a tag on this request. Can be used to cancel all requests with this
-     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
-     * @param url {@link String} destination URL
-     * @param params {@link JSONObject} parameters to send with the request, can be null.
-     * @param listener {@link SailsSocketResponse.Listener} listener to call when finished
+     * @param maxInFlight maximum emitted requests awaiting a response, 0 for no limit
+     * @return {@link SailsSocket}
      */
-    public SailsSocket delete(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
-        request(tag, METHOD_DELETE, url, params, null, listener);
+    public SailsSocket setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 0) {
+            throw new IllegalArgumentException("maxInFlight cannot be negative");
+        }
+
+        this.maxInFlight = maxInFlight;
+
+        // A higher limit may let queued requests go
+        if (isConnected() && !draining.get()) {
+            drainRequestQueue();
+        }
 
         return this;
     }
 
     /**
-     * Simulate an HTTP request to sails
+     * @return maximum emitted requests awaiting a response, 0 for no limit.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return number of emitted requests awaiting a response.
+     */
+    public int getInFlightRequestCount() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * @return emitted requests awaiting a response.
+     */
+    public List<SailsSocketRequest> getInFlightRequests() {
+        return new ArrayList<SailsSocketRequest>(awaitingResponse);
+    }
+
+    public SailsRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Send idempotent requests again when they fail with a transient error or time out.
+     * No retries by default.
      *
-     * @param tag Set a tag on this request. Can be used to cancel all requests with this
-     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
-     * @param method {@link String} HTTP request method
-     * @param url {@link String} destination URL
-     * @param params {@link JSONObject} parameters to send with the request, can be null.
-     * @param headers {@link Map} headers to be sent with the request, can be null.
-     * @param listener {@link SailsSocketResponse.Listener} listener to call when finished
+     * @param retryPolicy {@link SailsRetryPolicy}, null to disable retries
+     * @return {@link SailsSocket}
      */
-    public SailsSocket request(String tag, String method, String url, JSONObject params, Map<String, String> headers,
-                               SailsSocketResponse.Listener listener) {
+    public SailsSocket setRetryPolicy(SailsRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
 
-        Map<String, String> requestHeaders = new HashMap<String, String>();
+        return this;
+    }
 
-        // Merge Socket headers
-        requestHeaders.putAll(this.headers);
+    public SailsCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
 
-        // Merge Request headers
-        if (headers != null && !headers.isEmpty()) {
-            requestHeaders.putAll(headers);
-        }
+    /**
+     * Fail requests fast with a local 503 {@link JWR} while their route keeps failing,
+     * so that one failing route does not hold up the others. Disabled by default.
+     *
+     * @param circuitBreaker {@link SailsCircuitBreaker}, null to disable
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket setCircuitBreaker(SailsCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
 
-        // Build request
-        SailsSocketRequest request =
-                new SailsSocketRequest(tag, method, url, params, new JSONObject(requestHeaders), listener);
+        return this;
+    }
 
-        // If this socket is not connected yet, queue up this request
-        // instead of sending it (so it can be replayed when the socket comes online.)
-        if (!isConnected()) {
-            synchronized (requestQueue) {
-                requestQueue.add(request);
-            }
-        } else {
-            emitFrom(socket, request);
+    public DisconnectPolicy getDisconnectPolicy() {
+        return disconnectPolicy;
+    }
+
+    /**
+     * Set what happens to the requests awaiting a response when the socket disconnects,
+     * {@link DisconnectPolicy#REQUEUE_IDEMPOTENT} by default. Queued requests are not
+     * affected, they are sent once the socket reconnects.
+     *
+     * @param disconnectPolicy {@link DisconnectPolicy}
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket setDisconnectPolicy(DisconnectPolicy disconnectPolicy) {
+        if (disconnectPolicy == null) {
+            throw new IllegalArgumentException("disconnectPolicy cannot be null");
         }
 
+        this.disconnectPolicy = disconnectPolicy;
+
         return this;
     }
 
     /**
-     * Removes all requests in this queue with the given tag.
+     * @return {@link SailsResponseCache} of GET responses, null if disabled.
      */
-    public void removeRequestsByTag(final String tag) {
-        if (tag == null) {
-            throw new IllegalArgumentException("tag cannot be null");
-        }
+    public SailsResponseCache getResponseCache() {
+        return responseCache;
+    }
 
-        synchronized (requestQueue) {
-            for (SailsSocketRequest request : requestQueue) {
-                if (request.getTag().equals(tag)) {
-                    requestQueue.remove(request);
-                }
-            }
-        }
+    /**
+     * Cache GET responses following HTTP caching semantics, disabled by default.
+     * A cache can be shared by several sockets of the same server.
+     *
+     * @param responseCache {@link SailsResponseCache}, null to disable caching
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket setResponseCache(SailsResponseCache responseCache) {
+        this.responseCache = responseCache;
+
+        return this;
     }
 
     /**
-     * Removes all pending request in queue.
+     * @return whether identical concurrent GET requests share one emit.
      */
-    public void removeAllRequests() {
-        synchronized (requestQueue) {
-            requestQueue.clear();
-        }
+    public boolean isCoalesceGets() {
+        return coalesceGets;
     }
 
     /**
-     * Private method used by {@link SailsSocket#request}
+     * When enabled a GET request with the same url, params and headers as a GET
+     * request still awaiting its response is not emitted again, both get the same
+     * {@link JWR} once it arrives. Each request keeps its own tag, timeout and
+     * can be cancelled on its own. Disabled by default.
      *
-     * @param request {@link SailsSocketRequest}
+     * @param coalesceGets whether identical concurrent GET requests share one emit
+     * @return {@link SailsSocket}
      */
-    private void emitFrom(Socket socket, SailsSocketRequest request) {
-        // Name of the appropriate socket.io listener on the server
-        // ( === the request method or "verb", e.g. 'get', 'post', 'put', etc. )
-        String sailsEndpoint = request.getMethod();
+    public SailsSocket setCoalesceGets(boolean coalesceGets) {
+        this.coalesceGets = coalesceGets;
 
-        // Since Listener is embedded in request, retrieve it.
-        final SailsSocketResponse.Listener listener = request.getListener();
+        return this;
+    }
 
-        socket.emit(sailsEndpoint, request.toJSONObject(), new Ack() {
-            @Override
-            public void call(Object... args) {
-                // Send back jsonWebSocketResponse
-                if (listener != null) {
-                    listener.onResponse(new JWR((JSONObject) args[0]));
+    /**
+     * @return {@link Executor} running listeners, null if they run on the Socket.IO event thread.
+     */
+    public Executor getCallbackExecutor() {
+        SailsCallbackExecutor executor = callbackExecutor;
+
+        return executor != null ? executor.getExecutor() : null;
+    }
+
+    /**
+     * @return whether listeners sharing a request tag or an event run in order.
+     */
+    public boolean isCallbackOrdered() {
+        SailsCallbackExecutor executor = callbackExecutor;
+
+        return executor != null && executor.isOrdered();
+    }
+
+    /**
+     * Run response listeners and listeners bound by {@link #on(String, Emitter.Listener)}
+     * on executor, so a slow listener does not hold up other responses and heartbeats
+     * of this socket. By default listeners run on the Socket.IO event thread.
+     *
+     * @param executor {@link Executor} e.g. a bounded pool, null to run listeners on the event thread
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket setCallbackExecutor(Executor executor) {
+        return setCallbackExecutor(executor, false);
+    }
+
+    /**
+     * Run listeners on executor, see {@link #setCallbackExecutor(Executor)}. When ordered,
+     * response listeners of requests sharing a tag run one after the other in the order
+     * responses arrive, and so do listeners of the same event, while listeners of different
+     * tags or events run in parallel. Listeners of untagged requests are not ordered.
+     *
+     * @param executor {@link Executor}, null to run listeners on the event thread
+     * @param ordered whether listeners sharing a request tag or an event run in order
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket setCallbackExecutor(Executor executor, boolean ordered) {
+        return shareCallbackExecutor(executor != null ? new SailsCallbackExecutor(executor, ordered) : null);
+    }
+
+    /**
+     * @param callbackExecutor {@link SailsCallbackExecutor}, possibly shared by the sockets of a pool
+     */
+    SailsSocket shareCallbackExecutor(SailsCallbackExecutor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+
+        return this;
+    }
+
+    /**
+     * @return {@link SailsMetrics} recording this socket, null if disabled.
+     */
+    public SailsMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Record request latencies and counts, by method and route, and connection
+     * timings. Disabled by default, costing nothing.
+     *
+     * @param metrics {@link SailsMetrics}, e.g. a {@link SailsMetricsRecorder}, null to disable
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket setMetrics(SailsMetrics metrics) {
+        this.metrics = metrics;
+
+        return this;
+    }
+
+    /**
+     * @return number of requests queued or awaiting a response from Sails.
+     */
+    public int getPendingRequestCount() {
+        return pendingRequests.get();
+    }
+
+    /**
+     * Returns Socket.IO instance
+     *
+     * @return {@link Socket}
+     */
+    public Socket getSocket() {
+        return socket;
+    }
+
+    /**
+     *
+     * Chainable method to unbind an event to the socket.
+     *
+     * @param  event event name
+     * @param  fn {@link Emitter.Listener event handler listener
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket on(final String event, final Emitter.Listener fn) {
+        Emitter.Listener wrapper;
+
+        synchronized (eventListeners) {
+            Map<Emitter.Listener, Emitter.Listener> wrappers = eventListeners.get(event);
+
+            if (wrappers == null) {
+                wrappers = new HashMap<Emitter.Listener, Emitter.Listener>();
+                eventListeners.put(event, wrappers);
+            }
+
+            wrapper = wrappers.get(fn);
+
+            if (wrapper == null) {
+                // Dispatches to the callback executor set when the event is received
+                wrapper = new Emitter.Listener() {
+                    @Override
+                    public void call(final Object... args) {
+                        SailsCallbackExecutor executor = callbackExecutor;
+
+                        if (executor == null) {
+                            fn.call(args);
+                        } else {
+                            executor.executeEvent(event, new Runnable() {
+                                @Override
+                                public void run() {
+                                    fn.call(args);
+                                }
+                            });
+                        }
+                    }
+                };
+                wrappers.put(fn, wrapper);
+            }
+        }
+
+        socket.on(event, wrapper);
+
+        return this;
+    }
+
+    /**
+     *
+     * Chainable method to bind an event to the socket.
+     *
+     * @param  event event name
+     * @param  fn {@link Emitter.Listener event handler listener
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket off(String event, Emitter.Listener fn) {
+        Emitter.Listener wrapper = null;
+
+        synchronized (eventListeners) {
+            Map<Emitter.Listener, Emitter.Listener> wrappers = eventListeners.get(event);
+
+            if (wrappers != null) {
+                wrapper = wrappers.remove(fn);
+
+                if (wrappers.isEmpty()) {
+                    eventListeners.remove(event);
+                }
+            }
+        }
+
+        // Listeners bound on getSocket() directly are not wrapped
+        socket.off(event, wrapper != null ? wrapper : fn);
+
+        return this;
+    }
+
+    /**
+     * Stream an event with flow control, buffering up to 128 events per subscriber
+     * and dropping the oldest ones beyond.
+     *
+     * @param event event name, e.g. a model identity such as "user"
+     * @return {@link SailsEventPublisher}
+     */
+    public SailsEventPublisher events(String event) {
+        return events(event, SailsEventPublisher.Overflow.BUFFER, 128);
+    }
+
+    /**
+     * Stream an event with flow control: each subscriber receives events as it requests
+     * them, events received meanwhile are buffered and overflow decides what happens
+     * when its buffer is full. Subscribers are listeners of this socket, bound as by
+     * {@link #on(String, Emitter.Listener)} until they cancel.
+     *
+     * @param event event name, e.g. a model identity such as "user"
+     * @param overflow {@link SailsEventPublisher.Overflow} strategy
+     * @param bufferSize maximum events buffered per subscriber, ignored by
+     * {@link SailsEventPublisher.Overflow#LATEST}
+     * @return {@link SailsEventPublisher}
+     */
+    public SailsEventPublisher events(String event, SailsEventPublisher.Overflow overflow, int bufferSize) {
+        return new SailsEventPublisher(this, event, overflow, bufferSize);
+    }
+
+    /**
+     * Router decoding each message pushed by Sails once and dispatching it to the
+     * listeners subscribed to its event, verb and record id only. Its listeners are
+     * bound as by {@link #on(String, Emitter.Listener)}.
+     *
+     * @return {@link SailsEventRouter} of this socket
+     */
+    public SailsEventRouter getEventRouter() {
+        SailsEventRouter router = eventRouter;
+
+        if (router == null) {
+            synchronized (this) {
+                router = eventRouter;
+
+                if (router == null) {
+                    router = new SailsEventRouter(this);
+                    eventRouter = router;
+                }
+            }
+        }
+
+        return router;
+    }
+
+    /**
+     * Registry of the records this socket is subscribed to, subscribing to them again
+     * in batched requests after a reconnection.
+     *
+     * @return {@link SailsSubscriptions} of this socket
+     */
+    public SailsSubscriptions getSubscriptions() {
+        SailsSubscriptions registry = subscriptions;
+
+        if (registry == null) {
+            synchronized (this) {
+                registry = subscriptions;
+
+                if (registry == null) {
+                    registry = new SailsSubscriptions(this);
+                    subscriptions = registry;
+                }
+            }
+        }
+
+        return registry;
+    }
+
+    /**
+     * Simulate a GET request to sails
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param listener {@link SailsSocketResponse.Listener} listener to call when finished
+     */
+    public SailsSocket get(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
+        request(tag, METHOD_GET, url, params, null, listener);
+
+        return this;
+    }
+
+    /**
+     * Simulate a POST request to sails
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param listener {@link SailsSocketResponse.Listener} listener to call when finished
+     */
+    public SailsSocket post(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
+        request(tag, METHOD_POST, url, params, null, listener);
+
+        return this;
+    }
+
+    /**
+     * Simulate a PUT request to sails
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param listener {@link SailsSocketResponse.Listener} listener to call when finished
+     */
+    public SailsSocket put(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
+        request(tag, METHOD_PUT, url, params, null, listener);
+
+        return this;
+    }
+
+    /**
+     * Simulate a DELETE request to sails
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param listener {@link SailsSocketResponse.Listener} listener to call when finished
+     */
+    public SailsSocket delete(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
+        request(tag, METHOD_DELETE, url, params, null, listener);
+
+        return this;
+    }
+
+    /**
+     * Simulate an HTTP request to sails
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param method {@link String} HTTP request method
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param headers {@link Map} headers to be sent with the request, can be null.
+     * @param listener {@link SailsSocketResponse.Listener} listener to call when finished
+     */
+    public SailsSocket request(String tag, String method, String url, JSONObject params, Map<String, String> headers,
+                               SailsSocketResponse.Listener listener) {
+
+        send(buildRequest(tag, method, url, params, headers, listener));
+
+        return this;
+    }
+
+    /**
+     * Simulate a GET request to sails
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @return {@link SailsSocketFuture} completed with the response
+     */
+    public SailsSocketFuture getAsync(String tag, String url, JSONObject params) {
+        return requestAsync(tag, METHOD_GET, url, params, null);
+    }
+
+    /**
+     * Simulate a POST request to sails
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @return {@link SailsSocketFuture} completed with the response
+     */
+    public SailsSocketFuture postAsync(String tag, String url, JSONObject params) {
+        return requestAsync(tag, METHOD_POST, url, params, null);
+    }
+
+    /**
+     * Simulate a PUT request to sails
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @return {@link SailsSocketFuture} completed with the response
+     */
+    public SailsSocketFuture putAsync(String tag, String url, JSONObject params) {
+        return requestAsync(tag, METHOD_PUT, url, params, null);
+    }
+
+    /**
+     * Simulate a DELETE request to sails
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @return {@link SailsSocketFuture} completed with the response
+     */
+    public SailsSocketFuture deleteAsync(String tag, String url, JSONObject params) {
+        return requestAsync(tag, METHOD_DELETE, url, params, null);
+    }
+
+    /**
+     * Simulate an HTTP request to sails without a listener.
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param method {@link String} HTTP request method
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param headers {@link Map} headers to be sent with the request, can be null.
+     * @return {@link SailsSocketFuture} completed with the response
+     */
+    public SailsSocketFuture requestAsync(String tag, String method, String url, JSONObject params,
+                                          Map<String, String> headers) {
+        SailsSocketFuture future = new SailsSocketFuture(this);
+
+        SailsSocketRequest request = buildRequest(tag, method, url, params, headers, future);
+        future.setRequest(request);
+
+        send(request);
+
+        return future;
+    }
+
+    /**
+     * Send a request built by the caller, e.g. to set its timeout.
+     * Socket headers are merged with the request headers. A request can only be sent once.
+     *
+     * @param request {@link SailsSocketRequest}
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket request(SailsSocketRequest request) {
+        request.setSocketHeaders(headers);
+        request.setCodec(codec);
+
+        send(request);
+
+        return this;
+    }
+
+    /**
+     * Send a request built by the caller, e.g. to set its timeout.
+     * Socket headers are merged with the request headers. A request can only be sent once.
+     * The request listener, if any, is called before the future listeners.
+     *
+     * @param request {@link SailsSocketRequest}
+     * @return {@link SailsSocketFuture} completed with the response
+     */
+    public SailsSocketFuture requestAsync(SailsSocketRequest request) {
+        SailsSocketFuture future = new SailsSocketFuture(this);
+
+        if (request.getListener() != null) {
+            future.addListener(request.getListener());
+        }
+
+        request.setListener(future);
+        future.setRequest(request);
+
+        request(request);
+
+        return future;
+    }
+
+    /**
+     * Simulate a GET request to sails, waiting for its response.
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param timeout maximum time to wait for the response
+     * @param unit {@link TimeUnit} of timeout
+     * @return {@link JWR} response
+     * @see #requestSync(SailsSocketRequest, long, TimeUnit)
+     */
+    public JWR getSync(String tag, String url, JSONObject params, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        return requestSync(tag, METHOD_GET, url, params, null, timeout, unit);
+    }
+
+    /**
+     * Simulate a POST request to sails, waiting for its response.
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param timeout maximum time to wait for the response
+     * @param unit {@link TimeUnit} of timeout
+     * @return {@link JWR} response
+     * @see #requestSync(SailsSocketRequest, long, TimeUnit)
+     */
+    public JWR postSync(String tag, String url, JSONObject params, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        return requestSync(tag, METHOD_POST, url, params, null, timeout, unit);
+    }
+
+    /**
+     * Simulate a PUT request to sails, waiting for its response.
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param timeout maximum time to wait for the response
+     * @param unit {@link TimeUnit} of timeout
+     * @return {@link JWR} response
+     * @see #requestSync(SailsSocketRequest, long, TimeUnit)
+     */
+    public JWR putSync(String tag, String url, JSONObject params, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        return requestSync(tag, METHOD_PUT, url, params, null, timeout, unit);
+    }
+
+    /**
+     * Simulate a DELETE request to sails, waiting for its response.
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param timeout maximum time to wait for the response
+     * @param unit {@link TimeUnit} of timeout
+     * @return {@link JWR} response
+     * @see #requestSync(SailsSocketRequest, long, TimeUnit)
+     */
+    public JWR deleteSync(String tag, String url, JSONObject params, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        return requestSync(tag, METHOD_DELETE, url, params, null, timeout, unit);
+    }
+
+    /**
+     * Simulate an HTTP request to sails, waiting for its response.
+     *
+     * @param tag Set a tag on this request. Can be used to cancel all requests with this
+     * tag by {@link SailsSocket#removeRequestsByTag(String)}.
+     * @param method {@link String} HTTP request method
+     * @param url {@link String} destination URL
+     * @param params {@link JSONObject} parameters to send with the request, can be null.
+     * @param headers {@link Map} headers to be sent with the request, can be null.
+     * @param timeout maximum time to wait for the response
+     * @param unit {@link TimeUnit} of timeout
+     * @return {@link JWR} response
+     * @see #requestSync(SailsSocketRequest, long, TimeUnit)
+     */
+    public JWR requestSync(String tag, String method, String url, JSONObject params, Map<String, String> headers,
+                           long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout cannot be negative");
+        }
+
+        return await(requestAsync(tag, method, url, params, headers), timeout, unit);
+    }
+
+    /**
+     * Send a request built by the caller and wait for its response. The calling thread
+     * parks without holding any lock, so virtual threads do not pin their carrier.
+     * Once timeout elapses the request is cancelled, removing it from the queue if it
+     * was not sent yet. A shorter request timeout still completes with a local 408 {@link JWR}.
+     *
+     * @param request {@link SailsSocketRequest}
+     * @param timeout maximum time to wait for the response
+     * @param unit {@link TimeUnit} of timeout
+     * @return {@link JWR} response
+     * @throws TimeoutException if no response was received in time
+     * @throws InterruptedException if interrupted while waiting, the request is cancelled
+     * @throws java.util.concurrent.CancellationException if the request was cancelled, e.g. by tag
+     */
+    public JWR requestSync(SailsSocketRequest request, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout cannot be negative");
+        }
+
+        return await(requestAsync(request), timeout, unit);
+    }
+
+    /**
+     * Wait for the response of a request, cancelling it if none arrives in time.
+     */
+    private JWR await(SailsSocketFuture future, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        try {
+            try {
+                return future.get(timeout, unit);
+            } catch (TimeoutException e) {
+                // Unless the response arrived meanwhile
+                if (cancel(future.getRequest()) || !future.isDone() || future.isCancelled()) {
+                    throw e;
+                }
+
+                return future.get();
+            } catch (InterruptedException e) {
+                cancel(future.getRequest());
+                throw e;
+            }
+        } catch (ExecutionException e) {
+            // Never thrown, requests complete with a response
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Build a request sending the socket headers with request headers.
+     * A null request header removes the socket header.
+     */
+    private SailsSocketRequest buildRequest(String tag, String method, String url, JSONObject params,
+                                            Map<String, String> headers, SailsSocketResponse.Listener listener) {
+        JSONObject requestHeaders = null;
+
+        if (headers != null && !headers.isEmpty()) {
+            requestHeaders = new JSONObject();
+
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                requestHeaders.put(header.getKey(),
+                        header.getValue() != null ? header.getValue() : JSONObject.NULL);
+            }
+        }
+
+        SailsSocketRequest request = new SailsSocketRequest(tag, method, url, params, requestHeaders, listener);
+        request.setSocketHeaders(this.headers);
+        request.setCodec(codec);
+
+        return request;
+    }
+
+    /**
+     * Count and index request then dispatch it, or coalesce it with
+     * an identical GET request.
+     *
+     * @param request {@link SailsSocketRequest}
+     */
+    private void send(final SailsSocketRequest request) {
+        if (metrics != null) {
+            request.setSentAt(System.nanoTime());
+        }
+
+        pendingRequests.incrementAndGet();
+        index(request);
+
+        SailsRetryPolicy retryPolicy = this.retryPolicy;
+
+        if (retryPolicy != null && !isCarrier(request)) {
+            retryPolicy.deposit();
+        }
+
+        SailsResponseCache cache = responseCache;
+
+        if (cache != null && METHOD_GET.equalsIgnoreCase(request.getMethod())) {
+            JWR cached = cache.lookup(request);
+
+            if (cached != null) {
+                deliver(request, cached);
+                return;
+            }
+        }
+
+        SailsCircuitBreaker breaker = circuitBreaker;
+
+        // Half-open breakers let probes through when they are emitted
+        if (breaker != null && breaker.isOpen(request)) {
+            deliver(request, circuitOpen(request));
+            return;
+        }
+
+        armTimeout(request);
+
+        if (coalesceGets && METHOD_GET.equalsIgnoreCase(request.getMethod())) {
+            coalesce(request);
+        } else {
+            dispatch(request);
+        }
+    }
+
+    /**
+     * Schedule the timeout of a request, or of its next attempt when retried.
+     * The timer only takes the request out of the queue, its 408 is delivered
+     * from the event thread like any other response.
+     *
+     * @param request {@link SailsSocketRequest}
+     */
+    private void armTimeout(final SailsSocketRequest request) {
+        long timeout = request.getTimeout() > 0 ? request.getTimeout() : requestTimeout;
+
+        if (timeout > 0) {
+            request.setTimeoutHandle(SailsTimer.shared().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    requestQueue.remove(request);
+
+                    EventThread.nextTick(new Runnable() {
+                        @Override
+                        public void run() {
+                            deliver(request, JWR.local(408, "Request timed out"));
+                        }
+                    });
+                }
+            }, timeout, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Emit request if this socket is connected, queue it otherwise.
+     *
+     * @param request {@link SailsSocketRequest}
+     */
+    private void dispatch(SailsSocketRequest request) {
+        dispatch(request, true);
+    }
+
+    /**
+     * Emit request if this socket is connected, queue it otherwise.
+     *
+     * @param request {@link SailsSocketRequest}
+     * @param block false to reject the request instead of waiting for room in a full queue
+     */
+    private void dispatch(SailsSocketRequest request, boolean block) {
+        // If this socket is not connected yet, queue up this request
+        // instead of sending it (so it can be replayed when the socket comes online.)
+        // While the queue is drained, or too many requests await a response,
+        // new requests wait in the queue where they are scheduled by priority.
+        if (!isConnected() || draining.get() || isWindowFull()) {
+            List<SailsSocketRequest> overflow;
+
+            try {
+                overflow = requestQueue.offer(request, block);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                overflow = Collections.singletonList(request);
+            }
+
+            SailsMetrics metrics = this.metrics;
+
+            if (metrics != null && !overflow.contains(request)) {
+                metrics.onRequestQueued(request.getMethod(), request.getRoute());
+            }
+
+            for (SailsSocketRequest rejected : overflow) {
+                deliver(rejected, JWR.local(503, "Request queue is full"));
+            }
+
+            // Socket may have connected or finished draining in the meantime
+            if (isConnected() && !draining.get()) {
+                drainRequestQueue();
+            }
+        } else {
+            emitFrom(socket, request);
+        }
+    }
+
+    /**
+     * Join the flight of an identical request awaiting its response,
+     * or dispatch a carrier request for a new flight.
+     *
+     * @param request {@link SailsSocketRequest}
+     */
+    private void coalesce(SailsSocketRequest request) {
+        String key = request.requestKey();
+        Flight flight;
+        boolean leader = false;
+
+        synchronized (flights) {
+            if (request.isFinished()) {
+                return;
+            }
+
+            flight = flights.get(key);
+
+            if (flight == null) {
+                flight = new Flight(key, request);
+                flights.put(key, flight);
+                leader = true;
+            }
+
+            flight.members.add(request);
+            request.setCarrier(flight.carrier);
+        }
+
+        if (leader) {
+            dispatch(flight.carrier);
+        }
+    }
+
+    /**
+     * Remove a finished request from its flight, cancelling the carrier
+     * if no request awaits its response anymore.
+     *
+     * @param request {@link SailsSocketRequest}
+     */
+    private void leave(SailsSocketRequest request) {
+        SailsSocketRequest carrier = request.getCarrier();
+
+        if (carrier == null) {
+            return;
+        }
+
+        Flight flight = (Flight) carrier.getListener();
+        boolean abandoned;
+
+        synchronized (flights) {
+            abandoned = flight.members.remove(request) && flight.members.isEmpty()
+                    && flights.get(flight.key) == flight;
+
+            if (abandoned) {
+                flights.remove(flight.key);
+            }
+        }
+
+        if (abandoned) {
+            cancel(carrier);
+        }
+    }
+
+    /**
+     * Stop counting a finished request as in flight, letting a queued request go.
+     *
+     * @param request {@link SailsSocketRequest}
+     * @return false if request was not in flight.
+     */
+    private boolean settle(SailsSocketRequest request) {
+        if (!request.unmarkEmitted()) {
+            return false;
+        }
+
+        SailsCircuitBreaker breaker = circuitBreaker;
+
+        // Probe permit of an attempt ending without a recorded outcome
+        if (breaker != null) {
+            breaker.release(request);
+        }
+
+        awaitingResponse.remove(request);
+        inFlightRequests.decrementAndGet();
+
+        if (maxInFlight > 0 && isConnected() && !draining.get()) {
+            drainRequestQueue();
+        }
+
+        return true;
+    }
+
+    /**
+     * Requests awaiting a response when the socket disconnects will never get one,
+     * fail them or queue them again according to the disconnect policy.
+     */
+    private void abandonInFlight() {
+        DisconnectPolicy policy = disconnectPolicy;
+        int requeued = 0;
+        int failed = 0;
+
+        for (SailsSocketRequest request : new ArrayList<SailsSocketRequest>(awaitingResponse)) {
+            if (policy == DisconnectPolicy.REQUEUE_IDEMPOTENT && request.isIdempotent()) {
+                // Response received in the meantime otherwise
+                if (settle(request) && !request.isFinished()) {
+                    requeue(request);
+                    requeued++;
+                }
+            } else {
+                deliver(request, JWR.local(503, "Socket disconnected before the response"));
+                failed++;
+            }
+        }
+
+        if (requeued + failed > 0) {
+            logger.fine("Disconnected with requests awaiting a response, " + requeued + " queued again, "
+                    + failed + " failed");
+        }
+    }
+
+    /**
+     * Queue a request which was already admitted once without waiting for room,
+     * so that the thread reporting the disconnection never blocks.
+     *
+     * @param request {@link SailsSocketRequest}
+     */
+    private void requeue(SailsSocketRequest request) {
+        requestQueue.requeue(request);
+
+        SailsMetrics metrics = this.metrics;
+
+        if (metrics != null) {
+            metrics.onRequestQueued(request.getMethod(), request.getRoute());
+        }
+
+        // Socket may have reconnected in the meantime
+        if (isConnected() && !draining.get()) {
+            drainRequestQueue();
+        }
+    }
+
+    /**
+     * @return whether request is the carrier of a flight, such requests are not counted as pending.
+     */
+    private static boolean isCarrier(SailsSocketRequest request) {
+        return request.getListener() instanceof Flight;
+    }
+
+    /**
+     * Cancel a request, removing it from the queue if it was not sent yet.
+     * Its listener will not be called.
+     *
+     * @param request {@link SailsSocketRequest}
+     * @return false if the request was already finished.
+     */
+    boolean cancel(SailsSocketRequest request) {
+        if (!request.finish()) {
+            return false;
+        }
+
+        request.cancelTimeout();
+        requestQueue.remove(request);
+        if (!isCarrier(request)) {
+            pendingRequests.decrementAndGet();
+        }
+        unindex(request);
+        leave(request);
+        settle(request);
+
+        SailsSocketResponse.Listener listener = request.getListener();
+
+        SailsMetrics metrics = this.metrics;
+
+        if (metrics != null && !isCarrier(request)) {
+            metrics.onRequestCancelled(request.getMethod(), request.getRoute());
+        }
+
+        if (listener instanceof SailsSocketResponse.CancelListener) {
+            ((SailsSocketResponse.CancelListener) listener).onCancel(request);
+        }
+
+        return true;
+    }
+
+    /**
+     * Cancels all requests with the given tag, both queued and awaiting a response.
+     * Their listeners will not be called.
+     */
+    public void removeRequestsByTag(final String tag) {
+        if (tag == null) {
+            throw new IllegalArgumentException("tag cannot be null");
+        }
+
+        Set<SailsSocketRequest> requests;
+
+        synchronized (requestsByTag) {
+            requests = requestsByTag.remove(tag);
+        }
+
+        if (requests != null) {
+            for (SailsSocketRequest request : requests) {
+                cancel(request);
+            }
+        }
+    }
+
+    /**
+     * Removes all pending request in queue.
+     */
+    public void removeAllRequests() {
+        for (SailsSocketRequest request : requestQueue.clear()) {
+            cancel(request);
+        }
+    }
+
+    private void index(SailsSocketRequest request) {
+        if (request.getTag() == null) {
+            return;
+        }
+
+        synchronized (requestsByTag) {
+            Set<SailsSocketRequest> requests = requestsByTag.get(request.getTag());
+
+            if (requests == null) {
+                requests = new HashSet<SailsSocketRequest>();
+                requestsByTag.put(request.getTag(), requests);
+            }
+
+            requests.add(request);
+        }
+    }
+
+    private void unindex(SailsSocketRequest request) {
+        if (request.getTag() == null) {
+            return;
+        }
+
+        synchronized (requestsByTag) {
+            Set<SailsSocketRequest> requests = requestsByTag.get(request.getTag());
+
+            if (requests != null && requests.remove(request) && requests.isEmpty()) {
+                requestsByTag.remove(request.getTag());
+            }
+        }
+    }
+
+    /**
+     * Private method used by {@link SailsSocket#request}
+     *
+     * @param request {@link SailsSocketRequest}
+     */
+    private void emitFrom(Socket socket, final SailsSocketRequest request) {
+        // Name of the appropriate socket.io listener on the server
+        // ( === the request method or "verb", e.g. 'get', 'post', 'put', etc. )
+        String sailsEndpoint = request.getMethod();
+        final SailsSocketCodec codec = this.codec;
+
+        SailsCircuitBreaker breaker = circuitBreaker;
+
+        // Every attempt, retries included, needs a permit once its breaker opened
+        if (breaker != null && !breaker.tryAcquire(request)) {
+            deliver(request, circuitOpen(request));
+            return;
+        }
+
+        inFlightRequests.incrementAndGet();
+        // Tracked before being marked so that settle() always finds it
+        awaitingResponse.add(request);
+        request.markEmitted();
+
+        // Finished while being emitted, e.g. timed out
+        if (request.isFinished()) {
+            settle(request);
+        }
+
+        SailsMetrics metrics = this.metrics;
+
+        if (metrics != null) {
+            metrics.onRequestEmitted(request.getMethod(), request.getRoute());
+        }
+
+        final SailsResponseCache cache = this.responseCache;
+
+        socket.emit(sailsEndpoint, codec.encode(request), new Ack() {
+            @Override
+            public void call(Object... args) {
+                JWR response;
+
+                try {
+                    response = codec.decode(args.length > 0 ? args[0] : null);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Failed to decode response", e);
+                    response = JWR.local(500, "Failed to decode response");
+                }
+
+                if (cache != null && !response.isLocal()) {
+                    if (request.getCacheKey() != null) {
+                        response = cache.update(request, response);
+                    } else if (!METHOD_GET.equalsIgnoreCase(request.getMethod()) && !response.isError()) {
+                        cache.invalidate(request.getUrl());
+                    }
                 }
+
+                // Send back jsonWebSocketResponse
+                deliver(request, response);
             }
         });
     }
 
+    /**
+     * Send response to the request listener unless the request
+     * was already finished (e.g. cancelled).
+     *
+     * @param request {@link SailsSocketRequest}
+     * @param response {@link JWR}
+     */
+    private void deliver(SailsSocketRequest request, JWR response) {
+        SailsCircuitBreaker breaker = circuitBreaker;
+
+        // Outcome of an attempt emitted by this request, not shared by a flight
+        if (breaker != null && request.isEmitted() && !request.isFinished()) {
+            breaker.record(request, response, System.nanoTime() - request.getEmittedAt());
+        }
+
+        if (retry(request, response)) {
+            return;
+        }
+
+        if (!request.finish()) {
+            return;
+        }
+
+        request.cancelTimeout();
+        if (!isCarrier(request)) {
+            pendingRequests.decrementAndGet();
+        }
+        unindex(request);
+        leave(request);
+        settle(request);
+
+        SailsMetrics metrics = this.metrics;
+
+        if (metrics != null && !isCarrier(request)) {
+            record(metrics, request, response);
+        }
+
+        // Since Listener is embedded in request, retrieve it.
+        final SailsSocketResponse.Listener listener = request.getListener();
+
+        if (listener == null) {
+            return;
+        }
+
+        SailsCallbackExecutor executor = callbackExecutor;
+
+        // Flights deliver to their requests, which are dispatched on their own
+        if (executor == null || isCarrier(request)) {
+            listener.onResponse(response);
+        } else {
+            final JWR delivered = response;
+
+            executor.executeResponse(request.getTag(), new Runnable() {
+                @Override
+                public void run() {
+                    listener.onResponse(delivered);
+                }
+            });
+        }
+    }
+
+    /**
+     * Send an emitted request again after a backoff instead of delivering a transient
+     * failure, if the retry policy allows it.
+     *
+     * @param request {@link SailsSocketRequest}
+     * @param response {@link JWR} of the last attempt
+     * @return whether request will be sent again.
+     */
+    private boolean retry(final SailsSocketRequest request, JWR response) {
+        SailsRetryPolicy policy = retryPolicy;
+
+        // Only requests emitted themselves, neither cache hits nor coalesced ones
+        if (policy == null || request.isFinished() || request.getAttempts() == 0
+                || request.getAttempts() >= policy.getMaxAttempts() || !request.isIdempotent()
+                || !policy.isRetryable(response)) {
+            return false;
+        }
+
+        // Already settled by another response of this attempt, e.g. its timeout
+        if (!settle(request)) {
+            return false;
+        }
+
+        SailsCircuitBreaker breaker = circuitBreaker;
+
+        // Would fail fast anyway
+        if (breaker != null && breaker.isOpen(request)) {
+            return false;
+        }
+
+        if (!policy.withdraw()) {
+            return false;
+        }
+
+        request.cancelTimeout();
+
+        long delay = policy.backoff(request.getAttempts());
+
+        logger.fine("Retrying " + request.getMethod() + " " + request.getUrl() + " after " + response.getStatusCode()
+                + " in " + delay + " ms, attempt " + (request.getAttempts() + 1));
+
+        final Runnable attempt = new Runnable() {
+            @Override
+            public void run() {
+                // Cancelled during the backoff
+                if (request.isFinished()) {
+                    return;
+                }
+
+                armTimeout(request);
+                // Neither the event thread nor the timer may wait for room in the queue
+                dispatch(request, false);
+            }
+        };
+
+        SailsTimer.shared().schedule(onEventThread(attempt), delay, TimeUnit.MILLISECONDS);
+
+        return true;
+    }
+
+    private static JWR circuitOpen(SailsSocketRequest request) {
+        return JWR.local(503, "Circuit breaker open for " + request.getMethod() + " " + request.getRoute());
+    }
+
+    private static void record(SailsMetrics metrics, SailsSocketRequest request, JWR response) {
+        long sentAt = request.getSentAt();
+
+        // Sent before metrics were enabled
+        if (sentAt == 0) {
+            return;
+        }
+
+        long latency = System.nanoTime() - sentAt;
+
+        if (response.isLocal() && response.getStatusCode() == 408) {
+            metrics.onRequestTimedOut(request.getMethod(), request.getRoute(), latency);
+        } else {
+            metrics.onRequestCompleted(request.getMethod(), request.getRoute(), response.getStatusCode(), latency);
+        }
+    }
+
+    /**
+     * Coalesced GET requests sharing the response of their carrier request.
+     */
+    private class Flight implements SailsSocketResponse.Listener, SailsSocketResponse.CancelListener {
+
+        private final String key;
+        private final SailsSocketRequest carrier;
+
+        // Guarded by flights
+        private final List<SailsSocketRequest> members = new ArrayList<SailsSocketRequest>();
+
+        Flight(String key, SailsSocketRequest request) {
+            this.key = key;
+            this.carrier = request.copy(this);
+        }
+
+        @Override
+        public void onResponse(JWR response) {
+            List<SailsSocketRequest> requests = land();
+
+            response.setShared(requests.size() > 1);
+
+            for (SailsSocketRequest request : requests) {
+                deliver(request, response);
+            }
+        }
+
+        @Override
+        public void onCancel(SailsSocketRequest request) {
+            for (SailsSocketRequest member : land()) {
+                cancel(member);
+            }
+        }
+
+        /**
+         * Stop accepting requests.
+         *
+         * @return requests awaiting the response of the carrier
+         */
+        private List<SailsSocketRequest> land() {
+            synchronized (flights) {
+                if (flights.get(key) == this) {
+                    flights.remove(key);
+                }
+
+                return new ArrayList<SailsSocketRequest>(members);
+            }
+        }
+    }
+
+    /**
+     * What happens to the requests awaiting a response when the socket disconnects,
+     * as their response will never arrive.
+     */
+    public enum DisconnectPolicy {
+        /**
+         * Deliver a local 503 {@link JWR} to every request.
+         */
+        FAIL,
+        /**
+         * Queue idempotent requests again, see {@link SailsSocketRequest#isIdempotent()},
+         * they are sent once the socket reconnects. They are queued even when the queue is full.
+         * Deliver a local 503 {@link JWR} to others.
+         */
+        REQUEUE_IDEMPOTENT
+    }
+
+    /**
+     * Notified while queued requests are replayed, from the thread emitting them:
+     * the event thread once a paced or jittered replay resumes.
+     */
+    public interface DrainListener {
+
+        /**
+         * @param drained queued requests emitted so far
+         * @param remaining requests still queued
+         */
+        void onDrainProgress(int drained, int remaining);
+
+        /**
+         * @param drained queued requests emitted
+         */
+        void onDrainComplete(int drained);
+    }
+
 }
@@ -0,0 +1,36 @@
+package me.joshuamarquez.sails.io;
+
+/**
+ * Converts requests into the payload emitted to Sails and acknowledgements
+ * back into {@link JWR}s. {@link SailsJSONCodec} is used unless another codec
+ * is set by {@link SailsSocket#setCodec(SailsSocketCodec)}.
+ *
+ * Socket.IO writes payloads with org.json, a codec serializing with another
+ * library can skip building a {@link org.json.JSONObject} by returning an
+ * {@link org.json.JSONString} from {@link #encode(SailsSocketRequest)}.
+ */
+public interface SailsSocketCodec {
+
+    /**
+     * @param request {@link SailsSocketRequest} about to be emitted
+     * @return a {@link org.json.JSONObject} or an {@link org.json.JSONString} holding
+     * the method, url, params and headers of the request.
+     */
+    Object encode(SailsSocketRequest request);
+
+    /**
+     * @param payload acknowledgement sent by Sails, null if it sent none
+     * @return {@link JWR}
+     */
+    JWR decode(Object payload);
+
+    /**
+     * Convert a response body, as returned by {@link JWR#getBody()}, into type.
+     *
+     * @param body response body
+     * @param type class the body is converted to
+     * @return converted body, null if body is null
+     * @throws IllegalArgumentException if body cannot be converted into type
+     */
+    <T> T decodeBody(Object body, Class<T> type);
+}
@@ -0,0 +1,146 @@
+package me.joshuamarquez.sails.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pending result of a request made by {@link SailsSocket#requestAsync}.
+ *
+ * The future is completed with the {@link JWR} received from Sails. Cancelling it,
+ * directly or through {@link SailsSocket#removeRequestsByTag(String)}, removes the
+ * request from the socket queue if it has not been sent yet, otherwise its response
+ * is ignored.
+ */
+public class SailsSocketFuture implements Future<JWR>, SailsSocketResponse.Listener,
+        SailsSocketResponse.CancelListener {
+
+    private final SailsSocket sailsSocket;
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private SailsSocketRequest request;
+
+    private List<SailsSocketResponse.Listener> listeners = new ArrayList<SailsSocketResponse.Listener>();
+
+    private JWR response;
+
+    private boolean cancelled;
+
+    SailsSocketFuture(SailsSocket sailsSocket) {
+        this.sailsSocket = sailsSocket;
+    }
+
+    void setRequest(SailsSocketRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * @return {@link SailsSocketRequest} this future is waiting on.
+     */
+    public SailsSocketRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Call listener once the response is received, right away if it already was.
+     * The listener is never called if this future is cancelled.
+     *
+     * @param listener {@link SailsSocketResponse.Listener}
+     * @return {@link SailsSocketFuture}
+     */
+    public SailsSocketFuture addListener(SailsSocketResponse.Listener listener) {
+        JWR completed;
+
+        synchronized (this) {
+            if (!isDone()) {
+                listeners.add(listener);
+                return this;
+            }
+
+            completed = response;
+        }
+
+        if (completed != null) {
+            listener.onResponse(completed);
+        }
+
+        return this;
+    }
+
+    @Override
+    public void onResponse(JWR response) {
+        List<SailsSocketResponse.Listener> toNotify;
+
+        synchronized (this) {
+            if (isDone()) {
+                return;
+            }
+
+            this.response = response;
+            toNotify = listeners;
+            listeners = null;
+            latch.countDown();
+        }
+
+        for (SailsSocketResponse.Listener listener : toNotify) {
+            listener.onResponse(response);
+        }
+    }
+
+    @Override
+    public synchronized void onCancel(SailsSocketRequest request) {
+        if (isDone()) {
+            return;
+        }
+
+        cancelled = true;
+        listeners = null;
+        latch.countDown();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return !isDone() && sailsSocket.cancel(request);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    @Override
+    public JWR get() throws InterruptedException, ExecutionException {
+        latch.await();
+
+        return getResponse();
+    }
+
+    @Override
+    public JWR get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException("No response received in " + unit.toMillis(timeout) + " ms");
+        }
+
+        return getResponse();
+    }
+
+    private synchronized JWR getResponse() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+
+        return response;
+    }
+
+}
@@ -0,0 +1,635 @@
+package me.joshuamarquez.sails.io;
+
+import io.socket.client.IO;
+import io.socket.client.Socket;
+import io.socket.emitter.Emitter;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static me.joshuamarquez.sails.io.SailsSocketRequest.*;
+
+/**
+ * A fixed number of {@link SailsSocket} connections to the same url.
+ *
+ * Virtual requests are spread over the connected sockets according to
+ * a {@link Strategy}, so throughput is not capped by a single socket.io
+ * connection and its event thread.
+ */
+public class SailsSocketPool {
+
+    public enum Strategy {
+        /**
+         * Pick connected sockets in turn.
+         */
+        ROUND_ROBIN,
+
+        /**
+         * Pick the connected socket with the fewest queued or in-flight requests.
+         */
+        LEAST_PENDING
+    }
+
+    private final List<SailsSocket> sockets;
+
+    private final Strategy strategy;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public SailsSocketPool(String url, int size) {
+        this(url, null, size, Strategy.LEAST_PENDING);
+    }
+
+    /**
+     * @param url url to connect every socket
+     * @param options {@link IO.Options} shared by every socket, can be null.
+     * @param size number of sockets in this pool
+     * @param strategy {@link Strategy} used to dispatch requests
+     */
+    public SailsSocketPool(String url, IO.Options options, int size, Strategy strategy) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be greater than zero");
+        }
+
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy cannot be null");
+        }
+
+        if (options == null) {
+            options = new IO.Options();
+        }
+
+        List<SailsSocket> sockets = new ArrayList<SailsSocket>(size);
+        for (int i = 0; i < size; i++) {
+            // IO.socket opens a new Manager for a namespace which is already in use,
+            // so every socket gets its own connection.
+            sockets.add(new SailsSocket(url, options));
+        }
+
+        this.sockets = Collections.unmodifiableList(sockets);
+        this.strategy = strategy;
+    }
+
+    /**
+     * Begin connecting every socket in this pool.
+     *
+     * @return {@link SailsSocketPool}
+     */
+    public SailsSocketPool connect() {
+        return connect(null);
+    }
+
+    /**
+     * Begin connecting every socket in this pool with initial connection headers.
+     *
+     * @return {@link SailsSocketPool}
+     */
+    public SailsSocketPool connect(Map<String, List<String>> initialHeaders) {
+        for (SailsSocket sailsSocket : sockets) {
+            if (!sailsSocket.isConnected()) {
+                if (initialHeaders != null) {
+                    sailsSocket.connect(initialHeaders);
+                } else {
+                    sailsSocket.connect();
+                }
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Connect every socket and wait until all of them are connected.
+     *
+     * @param timeout maximum time to wait
+     * @param unit {@link TimeUnit} of timeout
+     * @return whether every socket is connected
+     */
+    public boolean warmUp(long timeout, TimeUnit unit) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(sockets.size());
+        List<Emitter.Listener> listeners = new ArrayList<Emitter.Listener>(sockets.size());
+
+        for (SailsSocket sailsSocket : sockets) {
+            final AtomicBoolean counted = new AtomicBoolean();
+
+            Emitter.Listener onConnect = new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    if (counted.compareAndSet(false, true)) {
+                        latch.countDown();
+                    }
+                }
+            };
+
+            listeners.add(onConnect);
+            sailsSocket.getSocket().once(Socket.EVENT_CONNECT, onConnect);
+
+            if (sailsSocket.isConnected()) {
+                onConnect.call();
+            }
+        }
+
+        connect();
+
+        try {
+            return latch.await(timeout, unit);
+        } finally {
+            for (int i = 0; i < sockets.size(); i++) {
+                sockets.get(i).getSocket().off(Socket.EVENT_CONNECT, listeners.get(i));
+            }
+        }
+    }
+
+    /**
+     * Disconnect every connected socket in this pool.
+     *
+     * @return {@link SailsSocketPool}
+     */
+    public SailsSocketPool disconnect() {
+        for (SailsSocket sailsSocket : sockets) {
+            if (sailsSocket.isConnected()) {
+                sailsSocket.disconnect();
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * @return number of sockets in this pool.
+     */
+    public int size() {
+        return sockets.size();
+    }
+
+    /**
+     * @return unmodifiable list of the sockets in this pool.
+     */
+    public List<SailsSocket> getSockets() {
+        return sockets;
+    }
+
+    /**
+     * @return {@link Strategy} used to dispatch requests.
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return number of sockets currently connected.
+     */
+    public int getConnectedCount() {
+        int connected = 0;
+
+        for (SailsSocket sailsSocket : sockets) {
+            if (sailsSocket.isConnected()) {
+                connected++;
+            }
+        }
+
+        return connected;
+    }
+
+    /**
+     * @return total number of requests queued or awaiting a response in this pool.
+     */
+    public int getPendingRequestCount() {
+        int pending = 0;
+
+        for (SailsSocket sailsSocket : sockets) {
+            pending += sailsSocket.getPendingRequestCount();
+        }
+
+        return pending;
+    }
+
+    /**
+     * @return total number of emitted requests awaiting a response in this pool.
+     */
+    public int getInFlightRequestCount() {
+        int inFlight = 0;
+
+        for (SailsSocket sailsSocket : sockets) {
+            inFlight += sailsSocket.getInFlightRequestCount();
+        }
+
+        return inFlight;
+    }
+
+    /**
+     * @return total number of queued requests in this pool.
+     */
+    public int getQueuedRequestCount() {
+        int queued = 0;
+
+        for (SailsSocket sailsSocket : sockets) {
+            queued += sailsSocket.getRequestQueue().size();
+        }
+
+        return queued;
+    }
+
+    /**
+     * Set headers to be sent in every request for every socket.
+     *
+     * @param headers socket request headers
+     * @return {@link SailsSocketPool}
+     */
+    public SailsSocketPool setHeaders(Map<String, String> headers) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setHeaders(headers);
+        }
+
+        return this;
+    }
+
+    /**
+     * Get headers to be sent in every request for every socket.
+     */
+    public Map<String, String> getHeaders() {
+        return sockets.get(0).getHeaders();
+    }
+
+    /**
+     * Set the codec of every socket.
+     *
+     * @param codec {@link SailsSocketCodec}
+     * @return {@link SailsSocketPool}
+     */
+    public SailsSocketPool setCodec(SailsSocketCodec codec) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setCodec(codec);
+        }
+
+        return this;
+    }
+
+    /**
+     * Coalesce identical concurrent GET requests sent through the same socket.
+     *
+     * @param coalesceGets whether identical concurrent GET requests share one emit
+     * @return {@link SailsSocketPool}
+     * @see SailsSocket#setCoalesceGets(boolean)
+     */
+    public SailsSocketPool setCoalesceGets(boolean coalesceGets) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setCoalesceGets(coalesceGets);
+        }
+
+        return this;
+    }
+
+    /**
+     * Share one retry policy, and its retry budget, between every socket.
+     *
+     * @param retryPolicy {@link SailsRetryPolicy}, null to disable retries
+     * @return {@link SailsSocketPool}
+     * @see SailsSocket#setRetryPolicy(SailsRetryPolicy)
+     */
+    public SailsSocketPool setRetryPolicy(SailsRetryPolicy retryPolicy) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setRetryPolicy(retryPolicy);
+        }
+
+        return this;
+    }
+
+    /**
+     * Share one set of circuit breakers between every socket.
+     *
+     * @param circuitBreaker {@link SailsCircuitBreaker}, null to disable
+     * @return {@link SailsSocketPool}
+     * @see SailsSocket#setCircuitBreaker(SailsCircuitBreaker)
+     */
+    public SailsSocketPool setCircuitBreaker(SailsCircuitBreaker circuitBreaker) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setCircuitBreaker(circuitBreaker);
+        }
+
+        return this;
+    }
+
+    /**
+     * Set what happens to the requests awaiting a response when a socket disconnects.
+     *
+     * @param disconnectPolicy {@link SailsSocket.DisconnectPolicy}
+     * @return {@link SailsSocketPool}
+     * @see SailsSocket#setDisconnectPolicy(SailsSocket.DisconnectPolicy)
+     */
+    public SailsSocketPool setDisconnectPolicy(SailsSocket.DisconnectPolicy disconnectPolicy) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setDisconnectPolicy(disconnectPolicy);
+        }
+
+        return this;
+    }
+
+    /**
+     * Share one response cache between every socket.
+     *
+     * @param responseCache {@link SailsResponseCache}, null to disable caching
+     * @return {@link SailsSocketPool}
+     * @see SailsSocket#setResponseCache(SailsResponseCache)
+     */
+    public SailsSocketPool setResponseCache(SailsResponseCache responseCache) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setResponseCache(responseCache);
+        }
+
+        return this;
+    }
+
+    /**
+     * Pace the replay of the queued requests of every socket.
+     *
+     * @param requestsPerSecond queued requests emitted per second by each socket, 0 for no limit
+     * @param burst queued requests which can be emitted at once by each socket
+     * @return {@link SailsSocketPool}
+     * @see SailsSocket#setDrainRate(double, int)
+     */
+    public SailsSocketPool setDrainRate(double requestsPerSecond, int burst) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setDrainRate(requestsPerSecond, burst);
+        }
+
+        return this;
+    }
+
+    /**
+     * Wait a random delay up to jitter before each socket drains its request queue.
+     *
+     * @param jitter maximum delay, 0 to drain at once
+     * @param unit {@link TimeUnit} of jitter
+     * @return {@link SailsSocketPool}
+     */
+    public SailsSocketPool setDrainJitter(long jitter, TimeUnit unit) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setDrainJitter(jitter, unit);
+        }
+
+        return this;
+    }
+
+    /**
+     * Limit the emitted requests awaiting a response on each socket.
+     *
+     * @param maxInFlight maximum emitted requests awaiting a response per socket, 0 for no limit
+     * @return {@link SailsSocketPool}
+     * @see SailsSocket#setMaxInFlight(int)
+     */
+    public SailsSocketPool setMaxInFlight(int maxInFlight) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setMaxInFlight(maxInFlight);
+        }
+
+        return this;
+    }
+
+    /**
+     * Run the listeners of every socket on executor. When ordered, listeners sharing a
+     * request tag or an event run in order across the whole pool.
+     *
+     * @param executor {@link Executor}, null to run listeners on the Socket.IO event threads
+     * @param ordered whether listeners sharing a request tag or an event run in order
+     * @return {@link SailsSocketPool}
+     * @see SailsSocket#setCallbackExecutor(Executor, boolean)
+     */
+    public SailsSocketPool setCallbackExecutor(Executor executor, boolean ordered) {
+        SailsCallbackExecutor callbackExecutor = executor != null ? new SailsCallbackExecutor(executor, ordered) : null;
+
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.shareCallbackExecutor(callbackExecutor);
+        }
+
+        return this;
+    }
+
+    /**
+     * Record the metrics of every socket in the same sink.
+     *
+     * @param metrics {@link SailsMetrics}, null to stop recording
+     * @return {@link SailsSocketPool}
+     * @see SailsSocket#setMetrics(SailsMetrics)
+     */
+    public SailsSocketPool setMetrics(SailsMetrics metrics) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.setMetrics(metrics);
+        }
+
+        return this;
+    }
+
+    /**
+     * @return {@link SailsSocketCodec} of every socket.
+     */
+    public SailsSocketCodec getCodec() {
+        return sockets.get(0).getCodec();
+    }
+
+    /**
+     * Select the socket the next request will be sent through.
+     *
+     * Disconnected sockets are skipped as long as one socket is connected,
+     * otherwise the request is queued on a socket until it connects.
+     *
+     * @return {@link SailsSocket}
+     */
+    public SailsSocket next() {
+        int size = sockets.size();
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+
+        SailsSocket selected = null;
+
+        for (int i = 0; i < size; i++) {
+            SailsSocket candidate = sockets.get((start + i) % size);
+
+            if (!candidate.isConnected()) {
+                continue;
+            }
+
+            if (strategy == Strategy.ROUND_ROBIN) {
+                return candidate;
+            }
+
+            if (selected == null ||
+                    candidate.getPendingRequestCount() < selected.getPendingRequestCount()) {
+                selected = candidate;
+            }
+        }
+
+        return selected != null ? selected : sockets.get(start);
+    }
+
+    /**
+     * Simulate a GET request to sails through the next socket.
+     *
+     * @see SailsSocket#get(String, String, JSONObject, SailsSocketResponse.Listener)
+     */
+    public SailsSocketPool get(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
+        return request(tag, METHOD_GET, url, params, null, listener);
+    }
+
+    /**
+     * Simulate a POST request to sails through the next socket.
+     *
+     * @see SailsSocket#post(String, String, JSONObject, SailsSocketResponse.Listener)
+     */
+    public SailsSocketPool post(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
+        return request(tag, METHOD_POST, url, params, null, listener);
+    }
+
+    /**
+     * Simulate a PUT request to sails through the next socket.
+     *
+     * @see SailsSocket#put(String, String, JSONObject, SailsSocketResponse.Listener)
+     */
+    public SailsSocketPool put(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
+        return request(tag, METHOD_PUT, url, params, null, listener);
+    }
+
+    /**
+     * Simulate a DELETE request to sails through the next socket.
+     *
+     * @see SailsSocket#delete(String, String, JSONObject, SailsSocketResponse.Listener)
+     */
+    public SailsSocketPool delete(String tag, String url, JSONObject params, SailsSocketResponse.Listener listener) {
+        return request(tag, METHOD_DELETE, url, params, null, listener);
+    }
+
+    /**
+     * Simulate an HTTP request to sails through the next socket.
+     *
+     * @see SailsSocket#request(String, String, String, JSONObject, Map, SailsSocketResponse.Listener)
+     */
+    public SailsSocketPool request(String tag, String method, String url, JSONObject params,
+                                   Map<String, String> headers, SailsSocketResponse.Listener listener) {
+        next().request(tag, method, url, params, headers, listener);
+
+        return this;
+    }
+
+    /**
+     * Simulate a GET request to sails through the next socket.
+     *
+     * @see SailsSocket#getAsync(String, String, JSONObject)
+     */
+    public SailsSocketFuture getAsync(String tag, String url, JSONObject params) {
+        return requestAsync(tag, METHOD_GET, url, params, null);
+    }
+
+    /**
+     * Simulate a POST request to sails through the next socket.
+     *
+     * @see SailsSocket#postAsync(String, String, JSONObject)
+     */
+    public SailsSocketFuture postAsync(String tag, String url, JSONObject params) {
+        return requestAsync(tag, METHOD_POST, url, params, null);
+    }
+
+    /**
+     * Simulate a PUT request to sails through the next socket.
+     *
+     * @see SailsSocket#putAsync(String, String, JSONObject)
+     */
+    public SailsSocketFuture putAsync(String tag, String url, JSONObject params) {
+        return requestAsync(tag, METHOD_PUT, url, params, null);
+    }
+
+    /**
+     * Simulate a DELETE request to sails through the next socket.
+     *
+     * @see SailsSocket#deleteAsync(String, String, JSONObject)
+     */
+    public SailsSocketFuture deleteAsync(String tag, String url, JSONObject params) {
+        return requestAsync(tag, METHOD_DELETE, url, params, null);
+    }
+
+    /**
+     * Simulate an HTTP request to sails through the next socket.
+     *
+     * @see SailsSocket#requestAsync(String, String, String, JSONObject, Map)
+     */
+    public SailsSocketFuture requestAsync(String tag, String method, String url, JSONObject params,
+                                          Map<String, String> headers) {
+        return next().requestAsync(tag, method, url, params, headers);
+    }
+
+    /**
+     * Simulate a GET request to sails through the next socket, waiting for its response.
+     *
+     * @see SailsSocket#getSync(String, String, JSONObject, long, TimeUnit)
+     */
+    public JWR getSync(String tag, String url, JSONObject params, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        return requestSync(tag, METHOD_GET, url, params, null, timeout, unit);
+    }
+
+    /**
+     * Simulate a POST request to sails through the next socket, waiting for its response.
+     *
+     * @see SailsSocket#postSync(String, String, JSONObject, long, TimeUnit)
+     */
+    public JWR postSync(String tag, String url, JSONObject params, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        return requestSync(tag, METHOD_POST, url, params, null, timeout, unit);
+    }
+
+    /**
+     * Simulate a PUT request to sails through the next socket, waiting for its response.
+     *
+     * @see SailsSocket#putSync(String, String, JSONObject, long, TimeUnit)
+     */
+    public JWR putSync(String tag, String url, JSONObject params, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        return requestSync(tag, METHOD_PUT, url, params, null, timeout, unit);
+    }
+
+    /**
+     * Simulate a DELETE request to sails through the next socket, waiting for its response.
+     *
+     * @see SailsSocket#deleteSync(String, String, JSONObject, long, TimeUnit)
+     */
+    public JWR deleteSync(String tag, String url, JSONObject params, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        return requestSync(tag, METHOD_DELETE, url, params, null, timeout, unit);
+    }
+
+    /**
+     * Simulate an HTTP request to sails through the next socket, waiting for its response.
+     *
+     * @see SailsSocket#requestSync(String, String, String, JSONObject, Map, long, TimeUnit)
+     */
+    public JWR requestSync(String tag, String method, String url, JSONObject params, Map<String, String> headers,
+                           long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        return next().requestSync(tag, method, url, params, headers, timeout, unit);
+    }
+
+    /**
+     * Removes all requests with the given tag in every socket queue.
+     */
+    public void removeRequestsByTag(String tag) {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.removeRequestsByTag(tag);
+        }
+    }
+
+    /**
+     * Removes all pending request in every socket queue.
+     */
+    public void removeAllRequests() {
+        for (SailsSocket sailsSocket : sockets) {
+            sailsSocket.removeAllRequests();
+        }
+    }
+
+}
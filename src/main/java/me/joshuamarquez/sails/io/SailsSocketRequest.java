@@ -2,18 +2,69 @@ package me.joshuamarquez.sails.io;
 
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONString;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SailsSocketRequest {
 
+    /**
+     * Scheduling priority of queued requests, see {@link SailsRequestQueue}.
+     */
+    public enum Priority {
+        /**
+         * User facing requests, polled first most of the time.
+         */
+        INTERACTIVE(6),
+
+        /**
+         * Default priority.
+         */
+        NORMAL(3),
+
+        /**
+         * Background requests, e.g. synchronization jobs.
+         */
+        BULK(1);
+
+        private final int defaultWeight;
+
+        Priority(int defaultWeight) {
+            this.defaultWeight = defaultWeight;
+        }
+
+        /**
+         * @return share of polls given to this priority unless set by
+         * {@link SailsRequestQueue#setWeight(Priority, int)}.
+         */
+        public int getDefaultWeight() {
+            return defaultWeight;
+        }
+    }
+
     private String method;
     private String url;
-    private JSONObject params;
+    // JSONObject or any object the codec can encode
+    private Object params;
     private JSONObject headers;
 
+    // Headers of the socket sending this request, set once sent
+    private SailsHeaders socketHeaders;
+
+    // Codec of the socket sending this request, set once sent
+    private volatile SailsSocketCodec codec;
+
+    // Request emitted on behalf of this one when coalesced with identical requests
+    private volatile SailsSocketRequest carrier;
+
+    // Key of this GET request in the response cache, and the cached entry it revalidates
+    private String cacheKey;
+    private SailsResponseCache.Entry staleEntry;
+
     private SailsSocketResponse.Listener listener;
 
-    private final String KEY_METHOD = "method";
-    private final String KEY_URL = "url";
     private final String KEY_PARAMS = "params";
     private final String KEY_HEADERS = "headers";
 
@@ -22,8 +73,48 @@ public class SailsSocketRequest {
     public final static String METHOD_PUT = "put";
     public final static String METHOD_DELETE = "delete";
 
+    private static final SailsSocketCodec DEFAULT_CODEC = new SailsJSONCodec();
+
     private String tag;
 
+    // Set once a response was delivered or the request was cancelled
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    // Size estimated by SailsRequestQueue while this request is queued
+    private long estimatedSize;
+
+    // Guarded by the SailsRequestQueue lock
+    private boolean queued;
+    private Priority queuedPriority;
+
+    private volatile Priority priority = Priority.NORMAL;
+
+    // Set while this request is emitted and counted as in flight by its socket
+    private final AtomicBoolean emitted = new AtomicBoolean();
+
+    // Milliseconds to wait for a response, 0 to use the socket default
+    private long timeout;
+
+    // System.nanoTime() when sent, only set while metrics are recorded
+    private volatile long sentAt;
+
+    // Normalized url, computed once when needed
+    private volatile String route;
+
+    private volatile SailsTimer.Timeout timeoutHandle;
+
+    // Whether sending this request twice is harmless, null to decide by method
+    private volatile Boolean idempotent;
+
+    // Number of times this request was emitted
+    private volatile int attempts;
+
+    // System.nanoTime() when last emitted
+    private volatile long emittedAt;
+
+    // Probe permit of a half-open circuit breaker held by the attempt in flight, guarded by the circuit
+    private Object probe;
+
     /**
      * Makes request with no params.
      *
@@ -56,6 +147,20 @@ public class SailsSocketRequest {
      */
     public SailsSocketRequest(String tag, String method, String url, JSONObject params, JSONObject headers,
                             SailsSocketResponse.Listener listener) {
+        this(tag, method, url, (Object) params, headers, listener);
+    }
+
+    /**
+     * Makes request with params of any type supported by the {@link SailsSocketCodec}
+     * of the socket, e.g. a {@link java.util.Map} or a bean for {@link SailsJSONCodec}.
+     *
+     * @param method HTTP request method [optional]
+     * @param url destination URL
+     * @param params parameters to send with the request [optional]
+     * @param headers headers to send with the request [optional]
+     */
+    public SailsSocketRequest(String tag, String method, String url, Object params, JSONObject headers,
+                              SailsSocketResponse.Listener listener) {
         if (params == null) {
             this.params = new JSONObject();
         }
@@ -80,12 +185,30 @@ public class SailsSocketRequest {
         return url;
     }
 
+    /**
+     * @return params as a {@link JSONObject}, converted by the codec of the socket,
+     * {@link SailsJSONCodec} until sent, when they were not given as one.
+     */
     public JSONObject getParams() {
+        Object json = toJSONObject().opt(KEY_PARAMS);
+
+        return json instanceof JSONObject ? (JSONObject) json : null;
+    }
+
+    /**
+     * @return params as given to this request.
+     */
+    public Object getParamsObject() {
         return params;
     }
 
+    /**
+     * @return headers of this request, merged with the socket headers once sent.
+     */
     public JSONObject getHeaders() {
-        return headers;
+        SailsHeaders socketHeaders = this.socketHeaders;
+
+        return socketHeaders != null ? socketHeaders.merge(headers) : headers;
     }
 
     public SailsSocketResponse.Listener getListener() {
@@ -96,15 +219,306 @@ public class SailsSocketRequest {
         return tag;
     }
 
-    public JSONObject toJSONObject() throws JSONException{
-        JSONObject request = new JSONObject();
+    /**
+     * @return milliseconds to wait for a response, 0 if the socket default applies.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Set how long to wait for a response, counted from the moment the request is made
+     * including the time spent in the request queue. Once elapsed the listener gets a
+     * local 408 {@link JWR}. Overrides {@link SailsSocket#setRequestTimeout(long, TimeUnit)}.
+     *
+     * @param timeout time to wait, 0 to use the socket default
+     * @param unit {@link TimeUnit} of timeout
+     * @return {@link SailsSocketRequest}
+     */
+    public SailsSocketRequest setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout cannot be negative");
+        }
+
+        this.timeout = unit.toMillis(timeout);
+
+        return this;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Set the priority of this request while it waits in the request queue,
+     * {@link Priority#NORMAL} by default.
+     *
+     * @param priority {@link Priority}
+     * @return {@link SailsSocketRequest}
+     */
+    public SailsSocketRequest setPriority(Priority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("priority cannot be null");
+        }
+
+        this.priority = priority;
+
+        return this;
+    }
+
+    /**
+     * @return whether sending this request more than once has the same effect as sending
+     * it once, by default true for GET, PUT and DELETE requests.
+     */
+    public boolean isIdempotent() {
+        Boolean idempotent = this.idempotent;
+
+        if (idempotent != null) {
+            return idempotent;
+        }
+
+        return !METHOD_POST.equalsIgnoreCase(method);
+    }
+
+    /**
+     * Mark whether this request can be sent again, e.g. when the socket disconnects before
+     * its response, see {@link SailsSocket#setDisconnectPolicy(SailsSocket.DisconnectPolicy)}.
+     *
+     * @param idempotent whether sending this request more than once is harmless
+     * @return {@link SailsSocketRequest}
+     */
+    public SailsSocketRequest setIdempotent(boolean idempotent) {
+        this.idempotent = idempotent;
+
+        return this;
+    }
+
+    /**
+     * @return number of times this request was emitted to Sails, more than one if it
+     * was sent again after a disconnection.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return whether a response was delivered or this request was cancelled.
+     */
+    public boolean isFinished() {
+        return finished.get();
+    }
+
+    /**
+     * Marks this request as finished.
+     *
+     * @return false if it was already finished.
+     */
+    boolean finish() {
+        return finished.compareAndSet(false, true);
+    }
 
-        request.put(KEY_METHOD, this.method);
-        request.put(KEY_URL, this.url);
-        request.put(KEY_PARAMS, this.params);
-        request.put(KEY_HEADERS, this.headers);
+    void setTimeoutHandle(SailsTimer.Timeout timeoutHandle) {
+        this.timeoutHandle = timeoutHandle;
+    }
+
+    void cancelTimeout() {
+        SailsTimer.Timeout handle = timeoutHandle;
+
+        if (handle != null) {
+            handle.cancel();
+        }
+    }
+
+    void setListener(SailsSocketResponse.Listener listener) {
+        this.listener = listener;
+    }
+
+    void setSocketHeaders(SailsHeaders socketHeaders) {
+        this.socketHeaders = socketHeaders;
+    }
+
+    /**
+     * @return headers sent with this request, the socket headers overlaid by the request headers.
+     */
+    Object getSentHeaders() {
+        return socketHeaders != null ? socketHeaders.overlay(headers) : headers;
+    }
+
+    /**
+     * @return codec of the socket sending this request, {@link SailsJSONCodec} until sent.
+     */
+    SailsSocketCodec getCodec() {
+        SailsSocketCodec codec = this.codec;
+
+        return codec != null ? codec : DEFAULT_CODEC;
+    }
+
+    void setCodec(SailsSocketCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Set a header on a copy of the request headers, the given headers are left untouched.
+     */
+    void putHeader(String name, String value) {
+        JSONObject copy = headers == null || headers.length() == 0
+                ? new JSONObject() : new JSONObject(headers, JSONObject.getNames(headers));
+
+        copy.put(name, value);
+        headers = copy;
+    }
+
+    String getCacheKey() {
+        return cacheKey;
+    }
+
+    void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    SailsResponseCache.Entry getStaleEntry() {
+        return staleEntry;
+    }
+
+    void setStaleEntry(SailsResponseCache.Entry staleEntry) {
+        this.staleEntry = staleEntry;
+    }
+
+    SailsSocketRequest getCarrier() {
+        return carrier;
+    }
+
+    void setCarrier(SailsSocketRequest carrier) {
+        this.carrier = carrier;
+    }
+
+    /**
+     * @param listener listener of the copy
+     * @return untagged copy of this request, sending the same method, url, params and headers.
+     */
+    SailsSocketRequest copy(SailsSocketResponse.Listener listener) {
+        SailsSocketRequest copy = new SailsSocketRequest(null, method, url, params, headers, listener);
+        copy.socketHeaders = socketHeaders;
+        copy.codec = codec;
+        copy.priority = priority;
+        copy.cacheKey = cacheKey;
+        copy.staleEntry = staleEntry;
+        copy.route = route;
+        copy.idempotent = idempotent;
+
+        return copy;
+    }
+
+    /**
+     * @return key equal for requests sending the same method, url, params and effective headers.
+     */
+    String requestKey() {
+        // Lowercase method and url first, see SailsResponseCache#invalidate(String)
+        return (method != null ? method.toLowerCase(Locale.US) : null) + ' ' + url
+                + '\n' + JSONObject.valueToString(getCodec().encode(this));
+    }
+
+    boolean isQueued() {
+        return queued;
+    }
+
+    void setQueued(boolean queued) {
+        this.queued = queued;
+    }
+
+    Priority getQueuedPriority() {
+        return queuedPriority;
+    }
+
+    void setQueuedPriority(Priority queuedPriority) {
+        this.queuedPriority = queuedPriority;
+    }
+
+    /**
+     * Marks this request as emitted, counting an attempt.
+     */
+    void markEmitted() {
+        attempts++;
+        emittedAt = System.nanoTime();
+        emitted.set(true);
+    }
+
+    long getEmittedAt() {
+        return emittedAt;
+    }
+
+    Object getProbe() {
+        return probe;
+    }
+
+    void setProbe(Object probe) {
+        this.probe = probe;
+    }
+
+    /**
+     * @return whether this request is emitted and awaits the response of its last attempt.
+     */
+    boolean isEmitted() {
+        return emitted.get();
+    }
+
+    /**
+     * @return false unless this request was marked emitted since the last call.
+     */
+    boolean unmarkEmitted() {
+        return emitted.compareAndSet(true, false);
+    }
+
+    /**
+     * @return url normalized by {@link SailsRoute#normalize(String)}.
+     */
+    String getRoute() {
+        String route = this.route;
+
+        if (route == null) {
+            route = SailsRoute.normalize(url);
+            this.route = route;
+        }
+
+        return route;
+    }
+
+    long getSentAt() {
+        return sentAt;
+    }
+
+    void setSentAt(long sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    void setEstimatedSize(long estimatedSize) {
+        this.estimatedSize = estimatedSize;
+    }
+
+    /**
+     * @return this request as encoded by the codec of the socket, {@link SailsJSONCodec} until sent,
+     * with values pre-serialized for the wire, such as the headers, parsed into a {@link JSONObject}.
+     */
+    public JSONObject toJSONObject() throws JSONException {
+        Object encoded = getCodec().encode(this);
+
+        if (!(encoded instanceof JSONObject)) {
+            return new JSONObject(JSONObject.valueToString(encoded));
+        }
+
+        JSONObject json = (JSONObject) encoded;
+        Object headers = json.opt(KEY_HEADERS);
+
+        if (headers instanceof JSONString) {
+            json = new JSONObject(json, JSONObject.getNames(json));
+            json.put(KEY_HEADERS, new JSONObject(((JSONString) headers).toJSONString()));
+        }
 
-        return request;
+        return json;
     }
 
-}
\ No newline at end of file
+}
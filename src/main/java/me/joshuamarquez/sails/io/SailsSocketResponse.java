@@ -1,9 +1,50 @@
 package me.joshuamarquez.sails.io;
 
+import java.util.Iterator;
+
 public class SailsSocketResponse {
 
     public interface Listener {
         void onResponse(JWR response);
     }
 
+    /**
+     * Implemented by a {@link Listener} which needs to know when its request is cancelled,
+     * cancelled requests never call {@link Listener#onResponse(JWR)}.
+     */
+    public interface CancelListener {
+        void onCancel(SailsSocketRequest request);
+    }
+
+    /**
+     * {@link Listener} receiving a successful response body one record at a time,
+     * see {@link JWR#getBodyRecords(boolean)}. Records are released from the response
+     * as they are processed.
+     */
+    public static abstract class RecordListener implements Listener {
+
+        @Override
+        public final void onResponse(JWR response) {
+            if (!response.isError()) {
+                Iterator<Object> records = response.getBodyRecords(true);
+
+                while (records.hasNext()) {
+                    onRecord(records.next());
+                }
+            }
+
+            onComplete(response);
+        }
+
+        /**
+         * Called for each record of a successful response, in order.
+         */
+        public abstract void onRecord(Object record);
+
+        /**
+         * Called once every record was processed, or right away for an error response.
+         */
+        public abstract void onComplete(JWR response);
+    }
+
 }
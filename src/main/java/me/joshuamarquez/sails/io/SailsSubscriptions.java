@@ -0,0 +1,342 @@
+package me.joshuamarquez.sails.io;
+
+import io.socket.client.Socket;
+import io.socket.emitter.Emitter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+import static me.joshuamarquez.sails.io.SailsSocketRequest.*;
+
+/**
+ * Records a socket is subscribed to, returned by {@link SailsSocket#getSubscriptions()}.
+ *
+ * Sails subscribes a socket to the records found by a blueprint GET request, and forgets
+ * these subscriptions when the socket disconnects. Records subscribed through this registry
+ * are subscribed again once the socket reconnects. Ids of a url are batched into as few
+ * requests as possible, each one finding up to {@link #getBatchSize()} records by id, e.g.
+ * GET /user with params {"where": {"id": [1, 2, 3]}, "limit": 3}.
+ *
+ * Sails has no blueprint to unsubscribe, unsubscribing only stops subscribing again unless
+ * an unsubscribe action of the application is set by {@link #setUnsubscribeAction(String)}.
+ */
+public class SailsSubscriptions {
+
+    /**
+     * Tag of the requests sent by the registry.
+     */
+    public final static String TAG = "sails.subscriptions";
+
+    private static final Logger logger = Logger.getLogger(SailsSubscriptions.class.getName());
+
+    private final SailsSocket sailsSocket;
+
+    // Ids subscribed by url, keyed by SailsEvent.idOf, guarded by this
+    private final Map<String, Map<String, Object>> subscriptions = new LinkedHashMap<String, Map<String, Object>>();
+
+    private volatile int batchSize = 100;
+
+    // Action posted the ids to unsubscribe, e.g. "unsubscribe" for POST /user/unsubscribe, null if none
+    private volatile String unsubscribeAction;
+
+    // Set when the socket disconnects, subscriptions are sent again when it connects
+    private volatile boolean lost;
+
+    SailsSubscriptions(SailsSocket sailsSocket) {
+        this.sailsSocket = sailsSocket;
+
+        sailsSocket.getSocket().on(Socket.EVENT_DISCONNECT, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                lost = true;
+            }
+        }).on(Socket.EVENT_CONNECT, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if (lost) {
+                    lost = false;
+                    resubscribe();
+                }
+            }
+        });
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize maximum ids found by one request
+     * @return {@link SailsSubscriptions}
+     */
+    public SailsSubscriptions setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be greater than zero");
+        }
+
+        this.batchSize = batchSize;
+
+        return this;
+    }
+
+    public String getUnsubscribeAction() {
+        return unsubscribeAction;
+    }
+
+    /**
+     * Set the action of the application unsubscribing from records, e.g. a controller
+     * action calling Model.unsubscribe(req, ids). Unsubscribed ids are posted to it in
+     * batches with params {"ids": [...]}.
+     *
+     * @param unsubscribeAction action appended to the url, e.g. "unsubscribe" for
+     * POST /user/unsubscribe, null to only stop subscribing again
+     * @return {@link SailsSubscriptions}
+     */
+    public SailsSubscriptions setUnsubscribeAction(String unsubscribeAction) {
+        this.unsubscribeAction = unsubscribeAction;
+
+        return this;
+    }
+
+    /**
+     * Subscribe to records, ids already subscribed are not requested again.
+     *
+     * @param url blueprint url of the model, e.g. "/user"
+     * @param ids ids of the records, numbers or strings
+     * @return {@link SailsSocketFuture}s of the requests sent, one per batch
+     */
+    public List<SailsSocketFuture> subscribe(String url, Object... ids) {
+        return subscribe(url, Arrays.asList(ids));
+    }
+
+    /**
+     * @see #subscribe(String, Object...)
+     */
+    public List<SailsSocketFuture> subscribe(String url, Collection<?> ids) {
+        if (url == null) {
+            throw new IllegalArgumentException("url cannot be null");
+        }
+
+        for (Object id : ids) {
+            if (SailsEvent.idOf(id) == null) {
+                throw new IllegalArgumentException("ids cannot contain null");
+            }
+        }
+
+        List<Object> added = new ArrayList<Object>();
+
+        synchronized (this) {
+            Map<String, Object> subscribed = subscriptions.get(url);
+
+            if (subscribed == null) {
+                subscribed = new LinkedHashMap<String, Object>();
+                subscriptions.put(url, subscribed);
+            }
+
+            for (Object id : ids) {
+                String key = SailsEvent.idOf(id);
+
+                if (!subscribed.containsKey(key)) {
+                    subscribed.put(key, id);
+                    added.add(id);
+                }
+            }
+
+            if (subscribed.isEmpty()) {
+                subscriptions.remove(url);
+            }
+        }
+
+        return send(METHOD_GET, url, added);
+    }
+
+    /**
+     * Unsubscribe from records.
+     *
+     * @param url blueprint url of the model, e.g. "/user"
+     * @param ids ids of the records, numbers or strings
+     * @return {@link SailsSocketFuture}s of the requests sent to the unsubscribe action,
+     * empty if none is set
+     */
+    public List<SailsSocketFuture> unsubscribe(String url, Object... ids) {
+        return unsubscribe(url, Arrays.asList(ids));
+    }
+
+    /**
+     * @see #unsubscribe(String, Object...)
+     */
+    public List<SailsSocketFuture> unsubscribe(String url, Collection<?> ids) {
+        List<Object> removed = new ArrayList<Object>();
+
+        synchronized (this) {
+            Map<String, Object> subscribed = subscriptions.get(url);
+
+            if (subscribed == null) {
+                return Collections.emptyList();
+            }
+
+            for (Object id : ids) {
+                Object original = subscribed.remove(SailsEvent.idOf(id));
+
+                if (original != null) {
+                    removed.add(original);
+                }
+            }
+
+            if (subscribed.isEmpty()) {
+                subscriptions.remove(url);
+            }
+        }
+
+        return send(METHOD_POST, url, removed);
+    }
+
+    /**
+     * Unsubscribe from every record of a url.
+     *
+     * @param url blueprint url of the model, e.g. "/user"
+     * @return {@link SailsSocketFuture}s of the requests sent to the unsubscribe action,
+     * empty if none is set
+     */
+    public List<SailsSocketFuture> unsubscribeAll(String url) {
+        Map<String, Object> subscribed;
+
+        synchronized (this) {
+            subscribed = subscriptions.remove(url);
+        }
+
+        if (subscribed == null) {
+            return Collections.emptyList();
+        }
+
+        return send(METHOD_POST, url, new ArrayList<Object>(subscribed.values()));
+    }
+
+    /**
+     * Unsubscribe from every record.
+     *
+     * @return {@link SailsSocketFuture}s of the requests sent to the unsubscribe action,
+     * empty if none is set
+     */
+    public List<SailsSocketFuture> clear() {
+        Map<String, Map<String, Object>> cleared;
+
+        synchronized (this) {
+            cleared = new LinkedHashMap<String, Map<String, Object>>(subscriptions);
+            subscriptions.clear();
+        }
+
+        List<SailsSocketFuture> futures = new ArrayList<SailsSocketFuture>();
+
+        for (Map.Entry<String, Map<String, Object>> entry : cleared.entrySet()) {
+            futures.addAll(send(METHOD_POST, entry.getKey(), new ArrayList<Object>(entry.getValue().values())));
+        }
+
+        return futures;
+    }
+
+    /**
+     * Subscribe again to every record, done when the socket connects after a disconnection.
+     *
+     * @return {@link SailsSocketFuture}s of the requests sent, one per batch
+     */
+    public List<SailsSocketFuture> resubscribe() {
+        Map<String, List<Object>> snapshot = new LinkedHashMap<String, List<Object>>();
+
+        synchronized (this) {
+            for (Map.Entry<String, Map<String, Object>> entry : subscriptions.entrySet()) {
+                snapshot.put(entry.getKey(), new ArrayList<Object>(entry.getValue().values()));
+            }
+        }
+
+        List<SailsSocketFuture> futures = new ArrayList<SailsSocketFuture>();
+
+        for (Map.Entry<String, List<Object>> entry : snapshot.entrySet()) {
+            futures.addAll(send(METHOD_GET, entry.getKey(), entry.getValue()));
+        }
+
+        if (!futures.isEmpty()) {
+            logger.fine("Subscribing again to " + snapshot.size() + " urls in " + futures.size() + " requests");
+        }
+
+        return futures;
+    }
+
+    /**
+     * @return urls having subscribed records.
+     */
+    public synchronized Set<String> getUrls() {
+        return new LinkedHashSet<String>(subscriptions.keySet());
+    }
+
+    /**
+     * @param url blueprint url of the model
+     * @return ids of the records subscribed, as given to {@link #subscribe(String, Object...)}.
+     */
+    public synchronized List<Object> getIds(String url) {
+        Map<String, Object> subscribed = subscriptions.get(url);
+
+        return subscribed != null ? new ArrayList<Object>(subscribed.values()) : new ArrayList<Object>();
+    }
+
+    /**
+     * @param url blueprint url of the model
+     * @param id id of the record
+     * @return whether the record is subscribed.
+     */
+    public synchronized boolean isSubscribed(String url, Object id) {
+        Map<String, Object> subscribed = subscriptions.get(url);
+
+        return subscribed != null && subscribed.containsKey(SailsEvent.idOf(id));
+    }
+
+    /**
+     * @return number of records subscribed.
+     */
+    public synchronized int size() {
+        int size = 0;
+
+        for (Map<String, Object> subscribed : subscriptions.values()) {
+            size += subscribed.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Send ids in batches, GET finds and subscribes to the records, POST unsubscribes.
+     */
+    private List<SailsSocketFuture> send(String method, String url, List<Object> ids) {
+        String action = unsubscribeAction;
+
+        if (ids.isEmpty() || (METHOD_POST.equals(method) && action == null)) {
+            return Collections.emptyList();
+        }
+
+        String target = METHOD_POST.equals(method) ? url + "/" + action : url;
+        int batchSize = this.batchSize;
+        List<SailsSocketFuture> futures = new ArrayList<SailsSocketFuture>();
+
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<Object> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            JSONObject params = new JSONObject();
+
+            if (METHOD_GET.equals(method)) {
+                params.put("where", new JSONObject().put("id", new JSONArray(batch)));
+                params.put("limit", batch.size());
+            } else {
+                params.put("ids", new JSONArray(batch));
+            }
+
+            // Cached responses would not subscribe the socket
+            JSONObject headers = new JSONObject().put("Cache-Control", "no-cache");
+
+            futures.add(sailsSocket.requestAsync(new SailsSocketRequest(TAG, method, target, params, headers, null)));
+        }
+
+        return futures;
+    }
+
+}
@@ -0,0 +1,277 @@
+package me.joshuamarquez.sails.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed wheel timer shared by every {@link SailsSocket}.
+ *
+ * Scheduling and cancelling are O(1) and a single daemon thread serves every timeout,
+ * so keeping a deadline on each outstanding request costs almost nothing. Timeouts
+ * fire with a precision of one tick and their tasks run on the timer thread, they
+ * must be short.
+ */
+final class SailsTimer {
+
+    private static final Logger logger = Logger.getLogger(SailsTimer.class.getName());
+
+    private static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static SailsTimer shared;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<Timeout>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Thread worker;
+    private volatile boolean idle;
+
+    private final long startTime;
+
+    static synchronized SailsTimer shared() {
+        if (shared == null) {
+            shared = new SailsTimer(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+        }
+
+        return shared;
+    }
+
+    /**
+     * @param tick duration of one tick
+     * @param unit {@link TimeUnit} of tick
+     * @param wheelSize number of buckets in the wheel, rounded up to a power of two
+     */
+    SailsTimer(long tick, TimeUnit unit, int wheelSize) {
+        tickNanos = unit.toNanos(tick);
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = size - 1;
+
+        startTime = System.nanoTime();
+
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, "sails-timer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Run task once after delay.
+     *
+     * @return {@link Timeout} which can be cancelled.
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + unit.toNanos(delay));
+
+        pending.incrementAndGet();
+        newTimeouts.add(timeout);
+
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+
+        return timeout;
+    }
+
+    /**
+     * @return number of timeouts neither expired nor cancelled.
+     */
+    int pendingTimeouts() {
+        return pending.get();
+    }
+
+    private void work() {
+        long tick = currentTick();
+
+        while (true) {
+            if (pending.get() == 0) {
+                removeCancelled();
+                idle = true;
+
+                if (pending.get() == 0) {
+                    LockSupport.park(this);
+                }
+
+                idle = false;
+
+                // Every bucket is empty, skip the ticks spent idle
+                tick = currentTick();
+                continue;
+            }
+
+            long sleepNanos = startTime + (tick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+
+            removeCancelled();
+            transferNewTimeouts(tick);
+            wheel[(int) (tick & mask)].expire(tick);
+
+            tick++;
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startTime) / tickNanos;
+    }
+
+    private void transferNewTimeouts(long tick) {
+        Timeout timeout;
+
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.state.get() != Timeout.ST_INIT) {
+                // Cancelled before reaching the wheel
+                continue;
+            }
+
+            long deadlineTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.rounds = (deadlineTick - tick) / wheel.length;
+            wheel[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long tick) {
+            Timeout timeout = head;
+
+            while (timeout != null) {
+                Timeout next = timeout.next;
+
+                if (timeout.rounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.rounds--;
+                }
+
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    static final class Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final SailsTimer timer;
+        private final Runnable task;
+        private final long deadline;
+
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+        // Only accessed by the timer thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(SailsTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return false if this timeout already expired or was cancelled.
+         */
+        boolean cancel() {
+            if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+
+            timer.pending.decrementAndGet();
+            timer.cancelledTimeouts.add(this);
+
+            return true;
+        }
+
+        boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+
+            timer.pending.decrementAndGet();
+
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.log(Level.WARNING, "Timer task failed", t);
+            }
+        }
+    }
+
+}
@@ -1,9 +1,14 @@
 package me.joshuamarquez.sails.io;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class JWRTest {
@@ -75,4 +80,120 @@ public class JWRTest {
         assertTrue(jwr.isError());
     }
 
-}
\ No newline at end of file
+    @Test(expected = UnsupportedOperationException.class)
+    public void headersShouldBeImmutable() throws Exception {
+        jwr.getHeaders().put("Content-Type", "text/plain");
+    }
+
+    @Test
+    public void shouldReturnEmptyHeadersWhenMissing() throws Exception {
+        JWR jwr = new JWR(new JSONObject() {
+            {
+                put("statusCode", 200);
+            }
+        });
+        assertTrue(jwr.getHeaders().isEmpty());
+        assertNull(jwr.getBody());
+    }
+
+    @Test
+    public void shouldConvertHeaderValuesToString() throws Exception {
+        JWR jwr = new JWR(new JSONObject() {
+            {
+                put("statusCode", 200);
+                put("headers", new JSONObject() {
+                    {
+                        put("Content-Length", 12);
+                    }
+                });
+            }
+        });
+        assertEquals("12", jwr.getHeaders().get("Content-Length"));
+        assertEquals("12", jwr.getHeaders().entrySet().iterator().next().getValue());
+    }
+
+    @Test
+    public void shouldIterateAndReleaseArrayRecords() throws Exception {
+        final JSONArray body = new JSONArray("[{\"id\":1},{\"id\":2},{\"id\":3}]");
+        JWR jwr = new JWR(new JSONObject() {
+            {
+                put("statusCode", 200);
+                put("body", body);
+            }
+        });
+
+        Iterator<Object> records = jwr.getBodyRecords(true);
+
+        assertEquals(1, ((JSONObject) records.next()).getInt("id"));
+        assertEquals(JSONObject.NULL, body.get(0));
+        assertEquals(2, ((JSONObject) records.next()).getInt("id"));
+        assertEquals(3, ((JSONObject) records.next()).getInt("id"));
+        assertFalse(records.hasNext());
+    }
+
+    @Test
+    public void shouldDecodeArrayStringRecordsOneByOne() throws Exception {
+        JWR jwr = new JWR(new JSONObject() {
+            {
+                put("statusCode", 200);
+                put("body", " [ {\"id\": 1}, \"two\" ,3, [4] ] ");
+            }
+        });
+
+        List<Object> records = new ArrayList<Object>();
+        Iterator<Object> iterator = jwr.getBodyRecords(false);
+        while (iterator.hasNext()) {
+            records.add(iterator.next());
+        }
+
+        assertEquals(4, records.size());
+        assertEquals(1, ((JSONObject) records.get(0)).getInt("id"));
+        assertEquals("two", records.get(1));
+        assertEquals(3, records.get(2));
+        assertEquals(4, ((JSONArray) records.get(3)).getInt(0));
+        assertFalse(new JWR(new JSONObject("{\"statusCode\":200,\"body\":\"[]\"}")).getBodyRecords(false).hasNext());
+    }
+
+    @Test
+    public void textStartingLikeAnArrayShouldBeASingleRecord() throws Exception {
+        for (String body : new String[] {"[INFO] done", "[INFO]", "[1, 2", "[1,]", "[1] [2]"}) {
+            JWR jwr = new JWR(new JSONObject().put("statusCode", 200).put("body", body));
+            Iterator<Object> records = jwr.getBodyRecords(false);
+
+            assertEquals(body, records.next());
+            assertFalse(records.hasNext());
+        }
+    }
+
+    @Test
+    public void shouldIterateOverSingleRecord() throws Exception {
+        Iterator<Object> records = jwr.getBodyRecords(false);
+
+        assertEquals("Hello world!", records.next());
+        assertFalse(records.hasNext());
+    }
+
+    @Test
+    public void recordListenerShouldReceiveEveryRecord() throws Exception {
+        final List<Object> records = new ArrayList<Object>();
+        final List<JWR> completed = new ArrayList<JWR>();
+
+        JWR jwr = new JWR(new JSONObject("{\"statusCode\":200,\"body\":[1,2,3]}"));
+
+        new SailsSocketResponse.RecordListener() {
+            @Override
+            public void onRecord(Object record) {
+                records.add(record);
+            }
+
+            @Override
+            public void onComplete(JWR response) {
+                completed.add(response);
+            }
+        }.onResponse(jwr);
+
+        assertEquals(3, records.size());
+        assertEquals(1, completed.size());
+    }
+
+}
@@ -0,0 +1,172 @@
+package me.joshuamarquez.sails.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsCallbackExecutorTest {
+
+    private ExecutorService pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+    }
+
+    @Test(timeout = 5000)
+    public void callbacksSharingAKeyShouldRunInOrder() throws Exception {
+        SailsCallbackExecutor executor = new SailsCallbackExecutor(pool, true);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+
+            executor.executeResponse("tag", new Runnable() {
+                @Override
+                public void run() {
+                    order.add(value);
+                    done.countDown();
+                }
+            });
+        }
+
+        done.await();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(order.get(i), is(i));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void differentKeysShouldRunInParallel() throws Exception {
+        SailsCallbackExecutor executor = new SailsCallbackExecutor(pool, true);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch other = new CountDownLatch(1);
+
+        executor.executeResponse("slow", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        executor.executeResponse("fast", new Runnable() {
+            @Override
+            public void run() {
+                other.countDown();
+            }
+        });
+
+        assertTrue(other.await(1, TimeUnit.SECONDS));
+        blocked.countDown();
+    }
+
+    @Test(timeout = 5000)
+    public void failingCallbackShouldNotStopItsKey() throws Exception {
+        SailsCallbackExecutor executor = new SailsCallbackExecutor(pool, true);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        executor.executeResponse("tag", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("Listener failure");
+            }
+        });
+
+        executor.executeResponse("tag", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        done.await();
+    }
+
+    @Test(timeout = 5000)
+    public void errorShouldNotWedgeItsKey() throws Exception {
+        SailsCallbackExecutor executor = new SailsCallbackExecutor(pool, true);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        executor.executeResponse("tag", new Runnable() {
+            @Override
+            public void run() {
+                throw new StackOverflowError();
+            }
+        });
+
+        executor.executeResponse("tag", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        done.await();
+    }
+
+    @Test(timeout = 5000)
+    public void tagAndEventOfTheSameNameShouldRunInParallel() throws Exception {
+        SailsCallbackExecutor executor = new SailsCallbackExecutor(pool, true);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch event = new CountDownLatch(1);
+
+        executor.executeResponse("user", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        executor.executeEvent("user", new Runnable() {
+            @Override
+            public void run() {
+                event.countDown();
+            }
+        });
+
+        assertTrue(event.await(2, TimeUnit.SECONDS));
+        blocked.countDown();
+    }
+
+    @Test
+    public void rejectedCallbackShouldRunOnCaller() throws Exception {
+        pool.shutdown();
+
+        SailsCallbackExecutor executor = new SailsCallbackExecutor(pool, false);
+        final Thread caller = Thread.currentThread();
+        final List<Thread> threads = new ArrayList<Thread>();
+
+        executor.executeResponse(null, new Runnable() {
+            @Override
+            public void run() {
+                threads.add(Thread.currentThread());
+            }
+        });
+
+        assertSame(caller, threads.get(0));
+    }
+
+}
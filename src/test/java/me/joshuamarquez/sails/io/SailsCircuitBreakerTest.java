@@ -0,0 +1,198 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsCircuitBreakerTest {
+
+    private SailsCircuitBreaker breaker;
+
+    @Before
+    public void setUp() throws Exception {
+        breaker = new SailsCircuitBreaker()
+                .setWindow(10, 4)
+                .setFailureRateThreshold(0.5)
+                .setOpenDuration(50, TimeUnit.MILLISECONDS)
+                .setHalfOpenProbes(2);
+    }
+
+    @Test
+    public void shouldOpenOnFailureRate() throws Exception {
+        record("/user/1", 200);
+        record("/user/2", 500);
+        record("/user/3", 200);
+        assertThat(state(), is(SailsCircuitBreaker.State.CLOSED));
+
+        record("/user/4", 503);
+
+        assertThat(state(), is(SailsCircuitBreaker.State.OPEN));
+        assertFalse(breaker.tryAcquire(request("/user/5")));
+        // Other routes are not affected
+        assertTrue(breaker.tryAcquire(request("/pet/1")));
+        assertTrue(breaker.tryAcquire(new SailsSocketRequest(null, SailsSocketRequest.METHOD_PUT, "/user/1", null)));
+    }
+
+    @Test
+    public void shouldCountTimeoutsButNotOtherLocalResponses() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(request("/user"), JWR.local(503, "Socket disconnected before the response"), 0);
+        }
+
+        assertThat(state("/user"), is(SailsCircuitBreaker.State.CLOSED));
+
+        for (int i = 0; i < 4; i++) {
+            breaker.record(request("/user"), JWR.local(408, "Request timed out"), 0);
+        }
+
+        assertThat(state("/user"), is(SailsCircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void shouldCountSlowCallsAsFailures() throws Exception {
+        breaker.setSlowCallDuration(100, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 4; i++) {
+            breaker.record(request("/user"), buildResponse(200), TimeUnit.MILLISECONDS.toNanos(150));
+        }
+
+        assertThat(state("/user"), is(SailsCircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void halfOpenProbesShouldClose() throws Exception {
+        open();
+        Thread.sleep(60);
+
+        SailsSocketRequest first = request("/user/1");
+        SailsSocketRequest second = request("/user/2");
+
+        assertTrue(breaker.tryAcquire(first));
+        assertThat(state(), is(SailsCircuitBreaker.State.HALF_OPEN));
+        assertTrue(breaker.tryAcquire(second));
+        assertFalse(breaker.tryAcquire(request("/user/3")));
+
+        breaker.record(first, buildResponse(200), 0);
+        breaker.record(second, buildResponse(200), 0);
+
+        assertThat(state(), is(SailsCircuitBreaker.State.CLOSED));
+        assertTrue(breaker.tryAcquire(request("/user/3")));
+    }
+
+    @Test
+    public void failedProbeShouldOpenAgain() throws Exception {
+        open();
+        Thread.sleep(60);
+
+        SailsSocketRequest probe = request("/user/1");
+
+        assertTrue(breaker.tryAcquire(probe));
+        breaker.record(probe, buildResponse(500), 0);
+
+        assertThat(state(), is(SailsCircuitBreaker.State.OPEN));
+        assertFalse(breaker.tryAcquire(request("/user/2")));
+    }
+
+    @Test
+    public void lostProbesShouldBeReplaced() throws Exception {
+        open();
+        Thread.sleep(60);
+
+        assertTrue(breaker.tryAcquire(request("/user/1")));
+        assertTrue(breaker.tryAcquire(request("/user/2")));
+        assertFalse(breaker.tryAcquire(request("/user/3")));
+
+        Thread.sleep(60);
+
+        assertTrue(breaker.tryAcquire(request("/user/3")));
+    }
+
+    @Test
+    public void onlyProbesShouldCountWhileHalfOpen() throws Exception {
+        open();
+        Thread.sleep(60);
+
+        SailsSocketRequest probe = request("/user/1");
+
+        assertTrue(breaker.tryAcquire(probe));
+
+        // Late responses of requests emitted before opening
+        record("/user/2", 500);
+        record("/user/3", 200);
+        record("/user/4", 200);
+
+        assertThat(state(), is(SailsCircuitBreaker.State.HALF_OPEN));
+
+        breaker.record(probe, buildResponse(200), 0);
+        // Recorded once
+        breaker.record(probe, buildResponse(200), 0);
+
+        assertThat(state(), is(SailsCircuitBreaker.State.HALF_OPEN));
+    }
+
+    @Test
+    public void releasedProbesShouldBeGivenBack() throws Exception {
+        open();
+        Thread.sleep(60);
+
+        SailsSocketRequest cancelled = request("/user/1");
+
+        assertTrue(breaker.tryAcquire(cancelled));
+        assertTrue(breaker.tryAcquire(request("/user/2")));
+        assertFalse(breaker.tryAcquire(request("/user/3")));
+
+        breaker.release(cancelled);
+        // Released once
+        breaker.release(cancelled);
+
+        assertTrue(breaker.tryAcquire(request("/user/3")));
+        assertFalse(breaker.tryAcquire(request("/user/4")));
+    }
+
+    @Test
+    public void resetShouldClose() throws Exception {
+        open();
+        breaker.reset();
+
+        assertThat(state(), is(SailsCircuitBreaker.State.CLOSED));
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            record("/user/" + i, 500);
+        }
+
+        assertThat(state(), is(SailsCircuitBreaker.State.OPEN));
+    }
+
+    private SailsCircuitBreaker.State state() {
+        return state("/user/:id");
+    }
+
+    private SailsCircuitBreaker.State state(String route) {
+        return breaker.getState(SailsSocketRequest.METHOD_GET, route);
+    }
+
+    private void record(String url, int statusCode) {
+        breaker.record(request(url), buildResponse(statusCode), 0);
+    }
+
+    private static SailsSocketRequest request(String url) {
+        return new SailsSocketRequest(null, SailsSocketRequest.METHOD_GET, url, null);
+    }
+
+    private static JWR buildResponse(int statusCode) {
+        JSONObject response = new JSONObject();
+        response.put("statusCode", statusCode);
+        response.put("headers", new JSONObject());
+        response.put("body", "Hello world!");
+
+        return new JWR(response);
+    }
+
+}
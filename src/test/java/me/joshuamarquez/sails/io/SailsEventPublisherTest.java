@@ -0,0 +1,183 @@
+package me.joshuamarquez.sails.io;
+
+import io.socket.emitter.Emitter;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsEventPublisherTest {
+
+    private SailsSocket sailsSocket;
+
+    @Before
+    public void setUp() throws Exception {
+        sailsSocket = new SailsSocket("http://localhost:1577");
+    }
+
+    @Test
+    public void shouldDeliverRequestedEvents() throws Exception {
+        TestSubscriber subscriber = subscribe(SailsEventPublisher.Overflow.BUFFER, 10);
+
+        receive(1, 2, 3);
+        assertThat(subscriber.values.size(), is(0));
+
+        subscriber.subscription.request(2);
+        assertThat(subscriber.values, is(list(1, 2)));
+
+        receive(4);
+        subscriber.subscription.request(5);
+        assertThat(subscriber.values, is(list(1, 2, 3, 4)));
+
+        receive(5);
+        assertThat(subscriber.values, is(list(1, 2, 3, 4, 5)));
+    }
+
+    @Test
+    public void bufferShouldKeepMostRecentEvents() throws Exception {
+        TestSubscriber subscriber = subscribe(SailsEventPublisher.Overflow.BUFFER, 2);
+
+        receive(1, 2, 3);
+        subscriber.subscription.request(10);
+
+        assertThat(subscriber.values, is(list(2, 3)));
+    }
+
+    @Test
+    public void dropShouldKeepOldestEvents() throws Exception {
+        TestSubscriber subscriber = subscribe(SailsEventPublisher.Overflow.DROP, 2);
+
+        receive(1, 2, 3);
+        subscriber.subscription.request(10);
+
+        assertThat(subscriber.values, is(list(1, 2)));
+    }
+
+    @Test
+    public void latestShouldKeepLastEvent() throws Exception {
+        TestSubscriber subscriber = subscribe(SailsEventPublisher.Overflow.LATEST, 10);
+
+        receive(1, 2, 3);
+        subscriber.subscription.request(10);
+
+        assertThat(subscriber.values, is(list(3)));
+    }
+
+    @Test
+    public void errorShouldCancelSubscription() throws Exception {
+        TestSubscriber subscriber = subscribe(SailsEventPublisher.Overflow.ERROR, 2);
+
+        receive(1, 2, 3);
+
+        assertThat(subscriber.error, instanceOf(IllegalStateException.class));
+        assertFalse(sailsSocket.getSocket().hasListeners("user"));
+    }
+
+    @Test
+    public void nonPositiveRequestShouldSignalError() throws Exception {
+        TestSubscriber subscriber = subscribe(SailsEventPublisher.Overflow.BUFFER, 2);
+
+        subscriber.subscription.request(0);
+
+        assertThat(subscriber.error, instanceOf(IllegalArgumentException.class));
+    }
+
+    @Test
+    public void cancelShouldStopListening() throws Exception {
+        TestSubscriber subscriber = subscribe(SailsEventPublisher.Overflow.BUFFER, 2);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        receive(1);
+        subscriber.subscription.cancel();
+
+        assertFalse(sailsSocket.getSocket().hasListeners("user"));
+        assertThat(subscriber.values, is(list(1)));
+    }
+
+    @Test
+    public void requestFromOnNextShouldNotRecurse() throws Exception {
+        final List<Object> received = new ArrayList<Object>();
+
+        sailsSocket.events("user", SailsEventPublisher.Overflow.BUFFER, 1000).subscribe(new TestSubscriber() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                super.onSubscribe(subscription);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Object[] args) {
+                received.add(args[0]);
+                subscription.request(1);
+            }
+        });
+
+        for (int i = 0; i < 1000; i++) {
+            receive(i);
+        }
+
+        assertThat(received.size(), is(1000));
+    }
+
+    private TestSubscriber subscribe(SailsEventPublisher.Overflow overflow, int bufferSize) {
+        TestSubscriber subscriber = new TestSubscriber();
+        sailsSocket.events("user", overflow, bufferSize).subscribe(subscriber);
+
+        return subscriber;
+    }
+
+    /**
+     * Simulate events received from Sails.
+     */
+    private void receive(Object... values) {
+        for (Object value : values) {
+            for (Emitter.Listener listener : sailsSocket.getSocket().listeners("user")) {
+                listener.call(value);
+            }
+        }
+    }
+
+    private static List<Object> list(Object... values) {
+        List<Object> list = new ArrayList<Object>();
+
+        for (Object value : values) {
+            list.add(value);
+        }
+
+        return list;
+    }
+
+    private static class TestSubscriber implements Subscriber<Object[]> {
+
+        Subscription subscription;
+        final List<Object> values = new ArrayList<Object>();
+        Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Object[] args) {
+            values.add(args[0]);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+}
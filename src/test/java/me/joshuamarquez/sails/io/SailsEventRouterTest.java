@@ -0,0 +1,202 @@
+package me.joshuamarquez.sails.io;
+
+import io.socket.emitter.Emitter;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.*;
+
+public class SailsEventRouterTest {
+
+    private SailsSocket sailsSocket;
+    private SailsEventRouter router;
+
+    @Before
+    public void setUp() throws Exception {
+        sailsSocket = new SailsSocket("http://localhost:1577");
+        router = sailsSocket.getEventRouter();
+    }
+
+    @Test
+    public void shouldDecodePubSubMessages() throws Exception {
+        SailsEvent event = SailsEvent.decode("user", new JSONObject("{\"verb\":\"updated\",\"id\":42,"
+                + "\"data\":{\"name\":\"Joshua\"},\"previous\":{\"name\":\"Josh\"}}"), sailsSocket.getCodec());
+
+        assertThat(event.getName(), is("user"));
+        assertThat(event.getVerb(), is(SailsEvent.VERB_UPDATED));
+        assertThat(event.getId(), is("42"));
+        assertThat(((JSONObject) event.getData()).getString("name"), is("Joshua"));
+        assertThat(((JSONObject) event.getPrevious()).getString("name"), is("Josh"));
+    }
+
+    @Test
+    public void shouldDecodeCreatedIdFromData() throws Exception {
+        SailsEvent event = SailsEvent.decode("user",
+                new JSONObject("{\"verb\":\"created\",\"data\":{\"id\":7}}"), sailsSocket.getCodec());
+
+        assertThat(event.getId(), is("7"));
+    }
+
+    @Test
+    public void shouldDecodeOtherMessagesAsData() throws Exception {
+        SailsEvent event = SailsEvent.decode("chat", "hello", sailsSocket.getCodec());
+
+        assertThat(event.getVerb(), nullValue());
+        assertThat(event.getId(), nullValue());
+        assertThat(event.getData(), is((Object) "hello"));
+    }
+
+    @Test
+    public void shouldDispatchOnlyToMatchingSubscriptions() throws Exception {
+        List<String> all = subscribe(null, null);
+        List<String> updated = subscribe(SailsEvent.VERB_UPDATED, null);
+        List<String> record = subscribe(null, 42);
+        List<String> updatedRecord = subscribe(SailsEvent.VERB_UPDATED, "42");
+
+        receive("user", "{\"verb\":\"updated\",\"id\":42}");
+        receive("user", "{\"verb\":\"updated\",\"id\":43}");
+        receive("user", "{\"verb\":\"destroyed\",\"id\":42}");
+
+        assertThat(all, is(list("updated 42", "updated 43", "destroyed 42")));
+        assertThat(updated, is(list("updated 42", "updated 43")));
+        assertThat(record, is(list("updated 42", "destroyed 42")));
+        assertThat(updatedRecord, is(list("updated 42")));
+    }
+
+    @Test
+    public void shouldDecodeOnceForAllSubscriptions() throws Exception {
+        final List<SailsEvent> events = new ArrayList<SailsEvent>();
+        SailsEventRouter.Listener listener = new SailsEventRouter.Listener() {
+            @Override
+            public void onEvent(SailsEvent event) {
+                events.add(event);
+            }
+        };
+
+        router.subscribe("user", listener);
+        router.subscribe("user", SailsEvent.VERB_CREATED, null, listener);
+
+        receive("user", "{\"verb\":\"created\",\"id\":1}");
+
+        assertThat(events.size(), is(2));
+        assertThat(events.get(0), sameInstance(events.get(1)));
+        assertThat(sailsSocket.getSocket().listeners("user").size(), is(1));
+    }
+
+    @Test
+    public void unsubscribeShouldStopDispatching() throws Exception {
+        final List<String> received = new ArrayList<String>();
+        SailsEventRouter.Subscription subscription = router.subscribe("user", new SailsEventRouter.Listener() {
+            @Override
+            public void onEvent(SailsEvent event) {
+                received.add(event.getVerb());
+            }
+        });
+
+        receive("user", "{\"verb\":\"created\",\"id\":1}");
+        subscription.unsubscribe();
+        subscription.unsubscribe();
+
+        assertThat(received, is(list("created")));
+        assertThat(router.getSubscriptionCount("user"), is(0));
+        assertFalse(sailsSocket.getSocket().hasListeners("user"));
+    }
+
+    @Test
+    public void unsubscribedListenerShouldNotGetMessageBeingDispatched() throws Exception {
+        final List<String> received = new ArrayList<String>();
+        final SailsEventRouter.Subscription[] other = new SailsEventRouter.Subscription[1];
+
+        router.subscribe("user", new SailsEventRouter.Listener() {
+            @Override
+            public void onEvent(SailsEvent event) {
+                other[0].unsubscribe();
+            }
+        });
+        other[0] = router.subscribe("user", new SailsEventRouter.Listener() {
+            @Override
+            public void onEvent(SailsEvent event) {
+                received.add(event.getVerb());
+            }
+        });
+
+        receive("user", "{\"verb\":\"created\",\"id\":1}");
+
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void unsubscribeAllShouldRemoveEvent() throws Exception {
+        subscribe(null, null);
+        subscribe(SailsEvent.VERB_UPDATED, 1);
+
+        assertThat(router.getSubscriptionCount("user"), is(2));
+
+        router.unsubscribeAll("user");
+
+        assertThat(router.getSubscriptionCount("user"), is(0));
+        assertFalse(sailsSocket.getSocket().hasListeners("user"));
+    }
+
+    @Test
+    public void failingListenerShouldNotStopDispatching() throws Exception {
+        router.subscribe("user", new SailsEventRouter.Listener() {
+            @Override
+            public void onEvent(SailsEvent event) {
+                throw new IllegalStateException("Listener failure");
+            }
+        });
+        List<String> received = subscribe(null, null);
+
+        receive("user", "{\"verb\":\"created\",\"id\":1}");
+
+        assertThat(received, is(list("created 1")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subscribeShouldRejectNullListener() throws Exception {
+        router.subscribe("user", null);
+    }
+
+    private List<String> subscribe(String verb, Object id) {
+        final List<String> received = new ArrayList<String>();
+
+        router.subscribe("user", verb, id, new SailsEventRouter.Listener() {
+            @Override
+            public void onEvent(SailsEvent event) {
+                received.add(event.getVerb() + " " + event.getId());
+            }
+        });
+
+        return received;
+    }
+
+    /**
+     * Simulate a message received from Sails.
+     */
+    private void receive(String event, String message) throws Exception {
+        JSONObject json = new JSONObject(message);
+
+        for (Emitter.Listener listener : sailsSocket.getSocket().listeners(event)) {
+            listener.call(json);
+        }
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<String>();
+
+        for (String value : values) {
+            list.add(value);
+        }
+
+        return list;
+    }
+
+}
@@ -0,0 +1,80 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsHeadersTest {
+
+    private Map<String, String> socketHeaders;
+    private SailsHeaders headers;
+
+    @Before
+    public void setUp() throws Exception {
+        socketHeaders = new HashMap<String, String>();
+        socketHeaders.put("x-test-header-one", "foo");
+        socketHeaders.put("x-test-header-two", "bar");
+
+        headers = new SailsHeaders(socketHeaders);
+    }
+
+    @Test
+    public void shouldBeSerializedOnce() throws Exception {
+        JSONObject json = new JSONObject(headers.toJSONString());
+
+        assertThat(json.getString("x-test-header-one"), is("foo"));
+        assertThat(json.getString("x-test-header-two"), is("bar"));
+        assertSame(headers, headers.overlay(null));
+        assertSame(headers, headers.overlay(new JSONObject()));
+    }
+
+    @Test
+    public void shouldNotChangeWithGivenMap() throws Exception {
+        socketHeaders.put("x-test-header-three", "baz");
+
+        assertThat(headers.asMap().size(), is(2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldBeImmutable() throws Exception {
+        headers.asMap().put("x-test-header-three", "baz");
+    }
+
+    @Test
+    public void requestHeadersShouldOverrideAndRemoveSocketHeaders() throws Exception {
+        JSONObject requestHeaders = new JSONObject();
+        requestHeaders.put("x-test-header-one", "baz");
+        requestHeaders.put("x-test-header-two", JSONObject.NULL);
+        requestHeaders.put("x-test-header-three", "qux");
+
+        JSONObject overlay = new JSONObject(headers.overlay(requestHeaders).toJSONString());
+        JSONObject merged = headers.merge(requestHeaders);
+
+        for (JSONObject json : new JSONObject[] {overlay, merged}) {
+            assertThat(json.length(), is(2));
+            assertThat(json.getString("x-test-header-one"), is("baz"));
+            assertThat(json.getString("x-test-header-three"), is("qux"));
+            assertFalse(json.has("x-test-header-two"));
+        }
+    }
+
+    @Test
+    public void requestShouldSendSocketHeaders() throws Exception {
+        SailsSocketRequest request = new SailsSocketRequest("SailsHeadersTest", SailsSocketRequest.METHOD_GET,
+                "/headers", null, new JSONObject().put("x-test-header-one", "baz"), null);
+        request.setSocketHeaders(headers);
+
+        JSONObject sent = request.toJSONObject().getJSONObject("headers");
+
+        assertThat(sent.getString("x-test-header-one"), is("baz"));
+        assertThat(sent.getString("x-test-header-two"), is("bar"));
+        assertThat(request.getHeaders().getString("x-test-header-two"), is("bar"));
+    }
+
+}
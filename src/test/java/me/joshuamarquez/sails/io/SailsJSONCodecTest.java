@@ -0,0 +1,248 @@
+package me.joshuamarquez.sails.io;
+
+import io.socket.hasbinary.HasBinary;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONString;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsJSONCodecTest {
+
+    private SailsJSONCodec codec = new SailsJSONCodec();
+
+    @Test
+    public void shouldEncodeMapParams() throws Exception {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("name", "Sails");
+
+        SailsSocketRequest request = new SailsSocketRequest("SailsJSONCodecTest",
+                SailsSocketRequest.METHOD_POST, "/user", params, null, null);
+
+        JSONObject payload = (JSONObject) codec.encode(request);
+
+        assertThat(payload.getJSONObject("params").getString("name"), is("Sails"));
+        assertThat(request.getParams().getString("name"), is("Sails"));
+        assertSame(params, request.getParamsObject());
+    }
+
+    @Test
+    public void shouldEncodeBeanParams() throws Exception {
+        SailsSocketRequest request = new SailsSocketRequest("SailsJSONCodecTest",
+                SailsSocketRequest.METHOD_POST, "/user", new User("Sails"), null, null);
+
+        JSONObject payload = (JSONObject) codec.encode(request);
+
+        assertThat(payload.getJSONObject("params").getString("name"), is("Sails"));
+    }
+
+    @Test
+    public void shouldEncodeBinaryParams() throws Exception {
+        byte[] thumbnail = new byte[] {1, 2, 3, 4};
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("thumbnail", thumbnail);
+        params.put("blobs", Arrays.asList(ByteBuffer.wrap(thumbnail, 1, 2)));
+
+        SailsSocketRequest request = new SailsSocketRequest("SailsJSONCodecTest",
+                SailsSocketRequest.METHOD_POST, "/image", params, null, null);
+
+        JSONObject payload = (JSONObject) codec.encode(request);
+        JSONObject encodedParams = payload.getJSONObject("params");
+
+        assertSame(thumbnail, encodedParams.get("thumbnail"));
+        assertArrayEquals(new byte[] {2, 3}, (byte[]) encodedParams.getJSONArray("blobs").get(0));
+        assertTrue(HasBinary.hasBinary(new JSONArray().put(payload)));
+    }
+
+    @Test
+    public void shouldCopyJSONObjectParamsHoldingByteBuffer() throws Exception {
+        JSONObject params = new JSONObject();
+        params.put("name", "Sails");
+        params.put("blob", ByteBuffer.wrap(new byte[] {1, 2}));
+
+        JSONObject encodedParams = (JSONObject) SailsJSONCodec.toJSON(params);
+
+        assertNotSame(params, encodedParams);
+        assertThat(encodedParams.getString("name"), is("Sails"));
+        assertArrayEquals(new byte[] {1, 2}, (byte[]) encodedParams.get("blob"));
+        assertTrue(params.get("blob") instanceof ByteBuffer);
+
+        JSONObject plain = new JSONObject().put("name", "Sails");
+        assertSame(plain, SailsJSONCodec.toJSON(plain));
+    }
+
+    @Test
+    public void shouldDecodeBinaryBody() throws Exception {
+        JSONObject payload = new JSONObject();
+        payload.put("statusCode", 200);
+        payload.put("body", new byte[] {1, 2, 3});
+
+        JWR response = codec.decode(payload);
+
+        assertArrayEquals(new byte[] {1, 2, 3}, response.getBody(byte[].class));
+        assertThat(response.getBody(ByteBuffer.class).remaining(), is(3));
+    }
+
+    @Test
+    public void shouldDecodeMissingPayload() throws Exception {
+        JWR response = codec.decode(null);
+
+        assertThat(response.getStatusCode(), is(0));
+        assertTrue(response.isError());
+    }
+
+    @Test
+    public void shouldDecodeTypedBody() throws Exception {
+        JSONObject payload = new JSONObject();
+        payload.put("statusCode", 200);
+        payload.put("body", "[1, 2]");
+
+        JWR response = codec.decode(payload);
+
+        assertThat(response.getBody(String.class), is("[1, 2]"));
+        assertThat(response.getBody(JSONArray.class).length(), is(2));
+        assertNull(codec.decodeBody(JSONObject.NULL, String.class));
+    }
+
+    @Test
+    public void shouldPopulateBeanBody() throws Exception {
+        JSONObject body = new JSONObject();
+        body.put("name", "Sails");
+        body.put("age", 3);
+        body.put("tags", new JSONArray().put("cat").put("black"));
+        body.put("friends", new JSONArray().put(new JSONObject().put("name", "Waterline")));
+        body.put("unknown", true);
+
+        Pet pet = codec.decodeBody(body, Pet.class);
+
+        assertThat(pet.getName(), is("Sails"));
+        assertThat(pet.getAge(), is(3));
+        assertThat(pet.getTags(), is(Arrays.asList("cat", "black")));
+        assertThat(pet.getFriends().get(0).getName(), is("Waterline"));
+
+        // Sent as a JSON string
+        assertThat(codec.decodeBody("{\"name\":\"Sails\"}", Pet.class).getName(), is("Sails"));
+    }
+
+    @Test
+    public void shouldPopulateMapAndListBodies() throws Exception {
+        JSONObject body = new JSONObject().put("name", "Sails").put("ids", new JSONArray().put(1).put(2));
+
+        Map<?, ?> map = codec.decodeBody(body, Map.class);
+
+        assertThat(map.get("name"), is((Object) "Sails"));
+        assertTrue(map.get("ids") instanceof JSONArray);
+
+        List<?> list = codec.decodeBody(new JSONArray().put(1).put(2), List.class);
+
+        assertThat(list.size(), is(2));
+        assertArrayEquals(new int[] {1, 2}, codec.decodeBody("[1, 2]", int[].class));
+        assertThat(codec.decodeBody(42, Long.class), is(42L));
+    }
+
+    @Test
+    public void requestShouldBeEncodedByItsCodec() throws Exception {
+        SailsSocketRequest request = new SailsSocketRequest("SailsJSONCodecTest",
+                SailsSocketRequest.METHOD_POST, "/user", new User("Sails"), null, null);
+
+        request.setCodec(new SailsJSONCodec() {
+            @Override
+            public Object encode(SailsSocketRequest request) {
+                return new JSONString() {
+                    @Override
+                    public String toJSONString() {
+                        return "{\"url\":\"/user\",\"params\":{\"name\":\"Waterline\"}}";
+                    }
+                };
+            }
+        });
+
+        assertThat(request.getParams().getString("name"), is("Waterline"));
+        assertThat(request.toJSONObject().getString("url"), is("/user"));
+        assertTrue(request.requestKey().endsWith("{\"url\":\"/user\",\"params\":{\"name\":\"Waterline\"}}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnsupportedBodyType() throws Exception {
+        codec.decodeBody("Hello world!", User.class);
+    }
+
+    @Test
+    public void preSerializedPayloadShouldBeWrittenAsIs() throws Exception {
+        // Socket.IO writes emitted arguments inside a JSONArray
+        JSONArray packet = new JSONArray();
+        packet.put("post");
+        packet.put(new JSONString() {
+            @Override
+            public String toJSONString() {
+                return "{\"url\":\"/user\"}";
+            }
+        });
+
+        assertThat(packet.toString(), is("[\"post\",{\"url\":\"/user\"}]"));
+    }
+
+    public static class User {
+
+        private final String name;
+
+        User(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class Pet {
+
+        private String name;
+        private int age;
+        private List<String> tags;
+        private List<Pet> friends;
+
+        public String getName() {
+            return name;
+        }
+
+        public Pet setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public List<Pet> getFriends() {
+            return friends;
+        }
+
+        public void setFriends(List<Pet> friends) {
+            this.friends = friends;
+        }
+    }
+
+}
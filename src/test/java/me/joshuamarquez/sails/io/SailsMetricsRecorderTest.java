@@ -0,0 +1,92 @@
+package me.joshuamarquez.sails.io;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsMetricsRecorderTest {
+
+    private SailsMetricsRecorder recorder;
+
+    @Before
+    public void setUp() throws Exception {
+        recorder = new SailsMetricsRecorder();
+    }
+
+    @Test
+    public void histogramPercentilesShouldBeAccurate() throws Exception {
+        SailsLatencyHistogram histogram = new SailsLatencyHistogram();
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertThat(histogram.getCount(), is(1000L));
+        assertThat(histogram.getMax(), is(TimeUnit.MICROSECONDS.toNanos(1000)));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(500), histogram.getMean(), 1000);
+
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(500), histogram.getValueAtPercentile(50));
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(990), histogram.getValueAtPercentile(99));
+        assertThat(histogram.getValueAtPercentile(100), is(histogram.getMax()));
+
+        histogram.reset();
+        assertThat(histogram.getValueAtPercentile(50), is(0L));
+    }
+
+    @Test
+    public void histogramBucketsShouldCoverEveryValue() throws Exception {
+        long[] values = {0, 1, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE};
+
+        for (long value : values) {
+            int bucket = SailsLatencyHistogram.bucketOf(value);
+
+            assertTrue(SailsLatencyHistogram.highestValueOf(bucket) >= value);
+            assertTrue(bucket == 0 || SailsLatencyHistogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    public void shouldCountRequestsByRoute() throws Exception {
+        recorder.onRequestQueued("get", "/user/:id");
+        recorder.onRequestEmitted("get", "/user/:id");
+        recorder.onRequestCompleted("get", "/user/:id", 200, 1000);
+        recorder.onRequestCompleted("get", "/user/:id", 503, 2000);
+        recorder.onRequestCompleted("get", "/user/:id", 0, 2500);
+        recorder.onRequestTimedOut("get", "/user/:id", 3000);
+        recorder.onRequestCancelled("post", "/user");
+
+        SailsMetricsRecorder.RouteMetrics metrics = recorder.getRouteMetrics("get", "/user/:id");
+
+        assertThat(metrics.getQueuedCount(), is(1L));
+        assertThat(metrics.getEmittedCount(), is(1L));
+        assertThat(metrics.getCompletedCount(), is(1L));
+        assertThat(metrics.getFailedCount(), is(2L));
+        assertThat(metrics.getTimedOutCount(), is(1L));
+        assertThat(metrics.getLatency().getCount(), is(3L));
+
+        assertThat(recorder.getRouteMetrics("post", "/user").getCancelledCount(), is(1L));
+        assertThat(recorder.getRouteMetrics().size(), is(2));
+        assertNull(recorder.getRouteMetrics("get", "/user"));
+    }
+
+    @Test
+    public void shouldRecordConnectionTimings() throws Exception {
+        recorder.onConnected(1000);
+        recorder.onDisconnected(5000);
+
+        assertThat(recorder.getConnectLatency().getMax(), is(1000L));
+        assertThat(recorder.getUptime().getMax(), is(5000L));
+
+        recorder.reset();
+        assertThat(recorder.getConnectLatency().getCount(), is(0L));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " is not within 12.5% of " + expected, Math.abs(actual - expected) <= expected / 8);
+    }
+
+}
@@ -0,0 +1,43 @@
+package me.joshuamarquez.sails.io;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsRateLimiterTest {
+
+    @Test
+    public void shouldAllowBurst() throws Exception {
+        SailsRateLimiter limiter = new SailsRateLimiter(1, 3);
+
+        assertThat(limiter.tryAcquire(), is(0L));
+        assertThat(limiter.tryAcquire(), is(0L));
+        assertThat(limiter.tryAcquire(), is(0L));
+
+        long wait = limiter.tryAcquire();
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(900));
+        assertTrue(wait <= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test(timeout = 2000)
+    public void shouldRefillAtRate() throws Exception {
+        SailsRateLimiter limiter = new SailsRateLimiter(100, 1);
+
+        assertThat(limiter.tryAcquire(), is(0L));
+
+        long wait = limiter.tryAcquire();
+        assertTrue(wait > 0);
+
+        TimeUnit.NANOSECONDS.sleep(wait);
+        assertThat(limiter.tryAcquire(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEmptyBurst() throws Exception {
+        new SailsRateLimiter(1, 0);
+    }
+
+}
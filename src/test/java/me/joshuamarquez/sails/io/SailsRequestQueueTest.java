@@ -0,0 +1,224 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsRequestQueueTest {
+
+    private SailsRequestQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        queue = new SailsRequestQueue();
+    }
+
+    @Test
+    public void shouldKeepInsertionOrder() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            queue.offer(buildRequest("/" + i));
+        }
+
+        List<SailsSocketRequest> requests = queue.clear();
+
+        assertThat(requests.size(), is(100));
+        for (int i = 0; i < 100; i++) {
+            assertThat(requests.get(i).getUrl(), is("/" + i));
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void shouldRejectWhenFull() throws Exception {
+        queue.setMaxRequests(2);
+
+        assertTrue(queue.offer(buildRequest("/1")).isEmpty());
+        assertTrue(queue.offer(buildRequest("/2")).isEmpty());
+
+        List<SailsSocketRequest> rejected = queue.offer(buildRequest("/3"));
+
+        assertThat(rejected.size(), is(1));
+        assertThat(rejected.get(0).getUrl(), is("/3"));
+        assertThat(queue.size(), is(2));
+    }
+
+    @Test
+    public void shouldDropOldestWhenFull() throws Exception {
+        queue.setMaxRequests(2).setOverflowPolicy(SailsRequestQueue.OverflowPolicy.DROP_OLDEST);
+
+        queue.offer(buildRequest("/1"));
+        queue.offer(buildRequest("/2"));
+
+        List<SailsSocketRequest> dropped = queue.offer(buildRequest("/3"));
+
+        assertThat(dropped.size(), is(1));
+        assertThat(dropped.get(0).getUrl(), is("/1"));
+        assertThat(queue.poll().getUrl(), is("/2"));
+        assertThat(queue.poll().getUrl(), is("/3"));
+        assertNull(queue.poll());
+    }
+
+    @Test(timeout = 2000)
+    public void shouldRejectAfterBlockTimeout() throws Exception {
+        queue.setMaxRequests(1)
+                .setOverflowPolicy(SailsRequestQueue.OverflowPolicy.BLOCK)
+                .setBlockTimeout(50, TimeUnit.MILLISECONDS);
+
+        queue.offer(buildRequest("/1"));
+
+        assertThat(queue.offer(buildRequest("/2")).size(), is(1));
+    }
+
+    @Test(timeout = 2000)
+    public void shouldRejectWithoutBlockingWhenAsked() throws Exception {
+        queue.setMaxRequests(1)
+                .setOverflowPolicy(SailsRequestQueue.OverflowPolicy.BLOCK)
+                .setBlockTimeout(1, TimeUnit.MINUTES);
+
+        queue.offer(buildRequest("/1"));
+
+        assertThat(queue.offer(buildRequest("/2"), false).size(), is(1));
+        assertThat(queue.size(), is(1));
+    }
+
+    @Test(timeout = 2000)
+    public void shouldAddOnceRoomIsMadeWhileBlocking() throws Exception {
+        queue.setMaxRequests(1)
+                .setOverflowPolicy(SailsRequestQueue.OverflowPolicy.BLOCK)
+                .setBlockTimeout(1, TimeUnit.SECONDS);
+
+        queue.offer(buildRequest("/1"));
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.poll();
+            }
+        }).start();
+
+        assertTrue(queue.offer(buildRequest("/2")).isEmpty());
+        assertThat(queue.poll().getUrl(), is("/2"));
+    }
+
+    @Test
+    public void shouldBoundBytes() throws Exception {
+        SailsSocketRequest request = buildRequest("/1");
+        long size = request.toJSONObject().toString().length();
+
+        queue.setMaxBytes(size * 2);
+
+        queue.offer(request);
+        queue.offer(buildRequest("/2"));
+
+        assertThat(queue.getBytes(), is(size * 2));
+        assertThat(queue.offer(buildRequest("/3")).size(), is(1));
+
+        queue.remove(request);
+        assertThat(queue.getBytes(), is(size));
+    }
+
+    @Test
+    public void binaryParamsShouldCountTheirLength() throws Exception {
+        SailsSocketRequest request = buildRequest("/1");
+        long size = request.toJSONObject().toString().length();
+
+        queue.setMaxBytes(Long.MAX_VALUE - 1);
+
+        JSONObject params = new JSONObject().put("blob", new byte[1000]);
+        queue.offer(new SailsSocketRequest("SailsRequestQueueTest", SailsSocketRequest.METHOD_GET, "/1",
+                params, null));
+
+        // "params":{"blob":<1000 bytes>} on top of the request without params
+        assertThat(queue.getBytes(), is(size + "\"params\":{\"blob\":}".length() + 1 + 1000));
+    }
+
+    @Test
+    public void shouldPollByWeightedPriority() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            queue.offer(buildRequest("/bulk", SailsSocketRequest.Priority.BULK));
+            queue.offer(buildRequest("/normal", SailsSocketRequest.Priority.NORMAL));
+            queue.offer(buildRequest("/interactive", SailsSocketRequest.Priority.INTERACTIVE));
+        }
+
+        // Weights 6, 3 and 1 share every 10 polls
+        int interactive = 0, normal = 0, bulk = 0;
+        for (int i = 0; i < 10; i++) {
+            String url = queue.poll().getUrl();
+
+            if (url.equals("/interactive")) {
+                interactive++;
+            } else if (url.equals("/normal")) {
+                normal++;
+            } else {
+                bulk++;
+            }
+        }
+
+        assertThat(interactive, is(6));
+        assertThat(normal, is(3));
+        assertThat(bulk, is(1));
+
+        assertThat(queue.size(), is(20));
+    }
+
+    @Test
+    public void shouldDropLowestPriorityFirst() throws Exception {
+        queue.setMaxRequests(2).setOverflowPolicy(SailsRequestQueue.OverflowPolicy.DROP_OLDEST);
+
+        queue.offer(buildRequest("/interactive", SailsSocketRequest.Priority.INTERACTIVE));
+        queue.offer(buildRequest("/bulk", SailsSocketRequest.Priority.BULK));
+
+        List<SailsSocketRequest> dropped = queue.offer(buildRequest("/normal", SailsSocketRequest.Priority.NORMAL));
+
+        assertThat(dropped.get(0).getUrl(), is("/bulk"));
+        assertThat(queue.poll().getUrl(), is("/interactive"));
+        assertThat(queue.poll().getUrl(), is("/normal"));
+    }
+
+    @Test
+    public void removedRequestsShouldBeSkipped() throws Exception {
+        SailsSocketRequest removed = buildRequest("/1");
+
+        queue.offer(removed);
+        queue.offer(buildRequest("/2"));
+
+        assertTrue(queue.remove(removed));
+        assertFalse(queue.remove(removed));
+        assertThat(queue.size(), is(1));
+        assertThat(queue.toList().size(), is(1));
+        assertThat(queue.poll().getUrl(), is("/2"));
+        assertNull(queue.poll());
+    }
+
+    @Test(timeout = 2000)
+    public void requeueShouldNotWaitForRoom() throws Exception {
+        queue.setMaxRequests(1).setOverflowPolicy(SailsRequestQueue.OverflowPolicy.BLOCK);
+
+        queue.offer(buildRequest("/1"));
+        queue.requeue(buildRequest("/2"));
+
+        assertThat(queue.size(), is(2));
+        assertThat(queue.poll().getUrl(), is("/1"));
+        assertThat(queue.poll().getUrl(), is("/2"));
+    }
+
+    private SailsSocketRequest buildRequest(String url) {
+        return new SailsSocketRequest("SailsRequestQueueTest", SailsSocketRequest.METHOD_GET, url, null);
+    }
+
+    private SailsSocketRequest buildRequest(String url, SailsSocketRequest.Priority priority) {
+        return buildRequest(url).setPriority(priority);
+    }
+
+}
@@ -0,0 +1,144 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsResponseCacheTest {
+
+    private SailsResponseCache cache;
+    private SailsSocketRequest lastRequest;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new SailsResponseCache(10000);
+    }
+
+    @Test
+    public void shouldServeFreshResponse() throws Exception {
+        JWR response = buildResponse(200, new JSONObject().put("Cache-Control", "max-age=60"));
+
+        assertNull(cache.lookup(buildRequest("/user")));
+        assertSame(response, cache.update(lastRequest, response));
+
+        assertSame(response, cache.lookup(buildRequest("/user")));
+        assertTrue(response.isShared());
+        assertNull(cache.lookup(buildRequest("/other")));
+
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void shouldRevalidateStaleResponse() throws Exception {
+        JWR response = buildResponse(200, new JSONObject().put("ETag", "\"v1\"").put("Cache-Control", "no-cache"));
+
+        cache.lookup(buildRequest("/user"));
+        cache.update(lastRequest, response);
+
+        SailsSocketRequest request = buildRequest("/user");
+        assertNull(cache.lookup(request));
+        assertThat(request.getHeaders().getString("If-None-Match"), is("\"v1\""));
+
+        assertSame(response, cache.update(request, buildResponse(304, new JSONObject())));
+        assertThat(cache.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void noCacheRequestShouldReachSails() throws Exception {
+        JWR response = buildResponse(200, new JSONObject().put("Cache-Control", "max-age=60"));
+        JSONObject headers = new JSONObject().put("Cache-Control", "no-cache");
+
+        SailsSocketRequest request = new SailsSocketRequest("SailsResponseCacheTest",
+                SailsSocketRequest.METHOD_GET, "/user", null, headers, null);
+        assertNull(cache.lookup(request));
+        cache.update(request, response);
+
+        request = new SailsSocketRequest("SailsResponseCacheTest",
+                SailsSocketRequest.METHOD_GET, "/user", null, headers, null);
+        assertNull(cache.lookup(request));
+        assertThat(cache.getHitCount(), is(0L));
+    }
+
+    @Test
+    public void shouldNotStoreResponse() throws Exception {
+        cache.lookup(buildRequest("/user"));
+        cache.update(lastRequest, buildResponse(200,
+                new JSONObject().put("Cache-Control", "no-store").put("ETag", "\"v1\"")));
+
+        cache.lookup(buildRequest("/other"));
+        cache.update(lastRequest, buildResponse(200, new JSONObject()));
+
+        cache.lookup(buildRequest("/error"));
+        cache.update(lastRequest, buildResponse(500, new JSONObject().put("Cache-Control", "max-age=60")));
+
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() throws Exception {
+        JSONObject headers = new JSONObject().put("Cache-Control", "max-age=60");
+        long size = SailsJSONCodec.estimateSize(buildResponse(200, headers).getJsonObjectResponse());
+
+        cache = new SailsResponseCache(size * 2);
+
+        cache.lookup(buildRequest("/1"));
+        cache.update(lastRequest, buildResponse(200, headers));
+        cache.lookup(buildRequest("/2"));
+        cache.update(lastRequest, buildResponse(200, headers));
+
+        // Use /1 so /2 is the least recently used
+        assertNotNull(cache.lookup(buildRequest("/1")));
+
+        cache.lookup(buildRequest("/3"));
+        cache.update(lastRequest, buildResponse(200, headers));
+
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(cache.getBytes(), is(size * 2));
+        assertNull(cache.lookup(buildRequest("/2")));
+        assertNotNull(cache.lookup(buildRequest("/1")));
+    }
+
+    @Test
+    public void shouldInvalidateUrl() throws Exception {
+        cache.lookup(buildRequest("/user"));
+        cache.update(lastRequest, buildResponse(200, new JSONObject().put("Cache-Control", "max-age=60")));
+
+        cache.invalidate("/user");
+
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getBytes(), is(0L));
+    }
+
+    @Test
+    public void shouldInvalidateUrlRequestedInUppercase() throws Exception {
+        SailsSocketRequest request = new SailsSocketRequest("SailsResponseCacheTest", "GET", "/user", null);
+
+        cache.lookup(request);
+        cache.update(request, buildResponse(200, new JSONObject().put("Cache-Control", "max-age=60")));
+        assertThat(cache.size(), is(1));
+
+        cache.invalidate("/user");
+
+        assertThat(cache.size(), is(0));
+    }
+
+    private SailsSocketRequest buildRequest(String url) {
+        lastRequest = new SailsSocketRequest("SailsResponseCacheTest", SailsSocketRequest.METHOD_GET, url, null);
+
+        return lastRequest;
+    }
+
+    private JWR buildResponse(int statusCode, JSONObject headers) {
+        JSONObject response = new JSONObject();
+        response.put("statusCode", statusCode);
+        response.put("headers", headers);
+        response.put("body", "Hello world!");
+
+        return new JWR(response);
+    }
+
+}
@@ -0,0 +1,102 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsRetryPolicyTest {
+
+    @Test
+    public void shouldRetryTransientFailures() throws Exception {
+        SailsRetryPolicy policy = new SailsRetryPolicy();
+
+        assertTrue(policy.isRetryable(buildResponse(503)));
+        assertTrue(policy.isRetryable(JWR.local(408, "Request timed out")));
+        assertFalse(policy.isRetryable(buildResponse(500)));
+        assertFalse(policy.isRetryable(buildResponse(404)));
+        // A 408 sent by Sails is not a timeout of this client
+        assertFalse(policy.isRetryable(buildResponse(408)));
+        // Failed without reaching Sails, e.g. disconnected
+        assertFalse(policy.isRetryable(JWR.local(503, "Socket disconnected before the response")));
+
+        policy.setRetryStatusCodes(500).setRetryOnTimeout(false);
+
+        assertTrue(policy.isRetryable(buildResponse(500)));
+        assertFalse(policy.isRetryable(buildResponse(503)));
+        assertFalse(policy.isRetryable(JWR.local(408, "Request timed out")));
+    }
+
+    @Test
+    public void backoffShouldGrowWithJitterUpToMax() throws Exception {
+        SailsRetryPolicy policy = new SailsRetryPolicy().setBackoff(100, 1000, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 100; i++) {
+            assertBetween(policy.backoff(1), 50, 100);
+            assertBetween(policy.backoff(2), 100, 200);
+            assertBetween(policy.backoff(3), 200, 400);
+            assertBetween(policy.backoff(10), 500, 1000);
+            assertBetween(policy.backoff(100), 500, 1000);
+        }
+    }
+
+    @Test
+    public void budgetShouldBoundRetries() throws Exception {
+        SailsRetryPolicy policy = new SailsRetryPolicy().setRetryBudget(0.5, 0);
+
+        assertFalse(policy.withdraw());
+
+        for (int i = 0; i < 4; i++) {
+            policy.deposit();
+        }
+
+        assertTrue(policy.withdraw());
+        assertTrue(policy.withdraw());
+        assertFalse(policy.withdraw());
+
+        assertThat(policy.getRetryCount(), is(2L));
+        assertThat(policy.getBudgetExhaustedCount(), is(2L));
+    }
+
+    @Test
+    public void budgetShouldAllowMinimumRetries() throws Exception {
+        SailsRetryPolicy policy = new SailsRetryPolicy().setRetryBudget(0, 2);
+
+        assertTrue(policy.withdraw());
+        assertTrue(policy.withdraw());
+        assertFalse(policy.withdraw());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectZeroAttempts() throws Exception {
+        new SailsRetryPolicy().setMaxAttempts(0);
+    }
+
+    @Test
+    public void postShouldNotBeIdempotentByDefault() throws Exception {
+        SailsSocketRequest post = new SailsSocketRequest(null, SailsSocketRequest.METHOD_POST, "/user", null);
+
+        assertFalse(post.isIdempotent());
+        assertTrue(post.setIdempotent(true).isIdempotent());
+        assertTrue(new SailsSocketRequest(null, SailsSocketRequest.METHOD_PUT, "/user/1", null).isIdempotent());
+        assertFalse(new SailsSocketRequest(null, SailsSocketRequest.METHOD_GET, "/user", null)
+                .setIdempotent(false).isIdempotent());
+    }
+
+    private static void assertBetween(long value, long min, long max) {
+        assertTrue(value + " not in [" + min + ", " + max + "]", value >= min && value <= max);
+    }
+
+    private static JWR buildResponse(int statusCode) {
+        JSONObject response = new JSONObject();
+        response.put("statusCode", statusCode);
+        response.put("headers", new JSONObject());
+        response.put("body", "Hello world!");
+
+        return new JWR(response);
+    }
+
+}
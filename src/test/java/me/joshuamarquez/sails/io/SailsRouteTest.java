@@ -0,0 +1,34 @@
+package me.joshuamarquez.sails.io;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsRouteTest {
+
+    @Test
+    public void shouldKeepRouteWithoutIdentifiers() throws Exception {
+        String url = "/user/pets";
+
+        assertSame(url, SailsRoute.normalize(url));
+        assertThat(SailsRoute.normalize("/user/pets?limit=10"), is("/user/pets"));
+        assertThat(SailsRoute.normalize("/user/#top"), is("/user/"));
+        assertThat(SailsRoute.normalize(null), is("/"));
+    }
+
+    @Test
+    public void shouldReplaceIdentifiers() throws Exception {
+        assertThat(SailsRoute.normalize("/user/42"), is("/user/:id"));
+        assertThat(SailsRoute.normalize("/user/42/pets/7?populate=owner"), is("/user/:id/pets/:id"));
+        assertThat(SailsRoute.normalize("/user/507f1f77bcf86cd799439011"), is("/user/:id"));
+        assertThat(SailsRoute.normalize("/user/123e4567-e89b-12d3-a456-426614174000/"), is("/user/:id/"));
+    }
+
+    @Test
+    public void shouldKeepWordsMadeOfHexDigits() throws Exception {
+        assertThat(SailsRoute.normalize("/cafe/add"), is("/cafe/add"));
+        assertThat(SailsRoute.normalize("/user/abc-def"), is("/user/abc-def"));
+    }
+
+}
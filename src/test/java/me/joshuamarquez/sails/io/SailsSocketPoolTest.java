@@ -0,0 +1,80 @@
+package me.joshuamarquez.sails.io;
+
+import io.socket.client.IO;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SailsSocketPoolTest extends SailsServer {
+
+    private final String url = "http://localhost:" + PORT;
+    private final String TAG = "SailsSocketPoolTest";
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldGetErrorWhenSizeIsZero() throws Exception {
+        new SailsSocketPool(url, 0);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void warmUpConnectsEverySocket() throws Exception {
+        SailsSocketPool pool = new SailsSocketPool(url, 3);
+
+        assertTrue(pool.warmUp(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertThat(pool.getConnectedCount(), is(3));
+
+        pool.disconnect();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void roundRobinUsesEverySocket() throws Exception {
+        SailsSocketPool pool = new SailsSocketPool(url, new IO.Options(), 3, SailsSocketPool.Strategy.ROUND_ROBIN);
+        pool.warmUp(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        Set<SailsSocket> used = new HashSet<SailsSocket>();
+        for (int i = 0; i < 3; i++) {
+            used.add(pool.next());
+        }
+
+        assertThat(used.size(), is(3));
+
+        pool.disconnect();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testGet() throws Exception {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        SailsSocketPool pool = new SailsSocketPool(url, 2);
+        pool.warmUp(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 4; i++) {
+            pool.get(TAG, "/hello", null, new SailsSocketResponse.Listener() {
+                @Override
+                public void onResponse(JWR response) {
+                    assertThat(response.getStatusCode(), is(200));
+
+                    values.offer("done");
+                }
+            });
+        }
+
+        for (int i = 0; i < 4; i++) {
+            values.take();
+        }
+
+        assertThat(pool.getPendingRequestCount(), is(0));
+
+        pool.disconnect();
+    }
+
+}
@@ -477,6 +477,98 @@ public class SailsSocketTest extends SailsServer {
         sailsSocket.disconnect();
     }
 
+    @Test(timeout = TIMEOUT)
+    public void testGetAsync() throws Exception {
+        SailsSocket sailsSocket = new SailsSocket(url);
+
+        SailsSocketFuture hello = sailsSocket.getAsync(TAG, "/hello", null);
+        SailsSocketFuture someJSON = sailsSocket.getAsync(TAG, "/someJSON", null);
+
+        sailsSocket.connect();
+
+        assertResponse("get /hello", hello.get());
+        assertResponse("get /someJSON", someJSON.get());
+        assertTrue(hello.isDone());
+        assertThat(sailsSocket.getPendingRequestCount(), is(0));
+
+        sailsSocket.disconnect();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void cancelledAsyncRequestShouldBeRemovedFromQueue() throws Exception {
+        SailsSocket sailsSocket = new SailsSocket(url);
+
+        SailsSocketFuture future = sailsSocket.getAsync(TAG, "/hello", null);
+        assertThat(sailsSocket.getPendingRequestCount(), is(1));
+
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertTrue(future.getRequest().isFinished());
+        assertThat(sailsSocket.getPendingRequestCount(), is(0));
+        assertFalse(future.cancel(false));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void removeRequestsByTagShouldCancelEveryMatchingRequest() throws Exception {
+        SailsSocket sailsSocket = new SailsSocket(url);
+
+        SailsSocketFuture first = sailsSocket.getAsync(TAG, "/hello", null);
+        SailsSocketFuture second = sailsSocket.getAsync(TAG, "/hello", null);
+        SailsSocketFuture other = sailsSocket.getAsync("other", "/hello", null);
+
+        sailsSocket.removeRequestsByTag(TAG);
+
+        assertTrue(first.isCancelled());
+        assertTrue(second.isCancelled());
+        assertFalse(other.isDone());
+        assertThat(sailsSocket.getRequestQueue().size(), is(1));
+
+        sailsSocket.connect();
+        assertResponse("get /hello", other.get());
+        sailsSocket.disconnect();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void coalescedGetRequestsShouldShareOneEmit() throws Exception {
+        SailsSocket sailsSocket = new SailsSocket(url).setCoalesceGets(true);
+
+        SailsSocketFuture first = sailsSocket.getAsync(TAG, "/hello", null);
+        SailsSocketFuture second = sailsSocket.getAsync(TAG, "/hello", null);
+        SailsSocketFuture cancelled = sailsSocket.getAsync("other", "/hello", null);
+        SailsSocketFuture delete = sailsSocket.deleteAsync(TAG, "/hello", null);
+
+        assertThat(sailsSocket.getPendingRequestCount(), is(4));
+        assertThat(sailsSocket.getRequestQueue().size(), is(2));
+
+        sailsSocket.removeRequestsByTag("other");
+        assertTrue(cancelled.isCancelled());
+        assertThat(sailsSocket.getRequestQueue().size(), is(2));
+
+        sailsSocket.connect();
+        JWR response = first.get();
+        assertResponse("get /hello", response);
+        assertSame(response, second.get());
+        assertTrue(response.isShared());
+        assertResponse("delete /hello", delete.get());
+        assertThat(sailsSocket.getPendingRequestCount(), is(0));
+        sailsSocket.disconnect();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void cancellingEveryCoalescedRequestShouldRemoveTheEmit() throws Exception {
+        SailsSocket sailsSocket = new SailsSocket(url).setCoalesceGets(true);
+
+        SailsSocketFuture first = sailsSocket.getAsync(TAG, "/hello", null);
+        SailsSocketFuture second = sailsSocket.getAsync(TAG, "/hello", null);
+        assertThat(sailsSocket.getRequestQueue().size(), is(1));
+
+        assertTrue(first.cancel(false));
+        assertThat(sailsSocket.getRequestQueue().size(), is(1));
+        assertTrue(second.cancel(false));
+        assertThat(sailsSocket.getRequestQueue().size(), is(0));
+        assertThat(sailsSocket.getPendingRequestCount(), is(0));
+    }
+
     /**
      * Creates new Response Listener
      *
@@ -0,0 +1,145 @@
+package me.joshuamarquez.sails.io;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsSubscriptionsTest {
+
+    private SailsSocket sailsSocket;
+    private SailsSubscriptions subscriptions;
+
+    @Before
+    public void setUp() throws Exception {
+        // Not connected, requests stay in the queue
+        sailsSocket = new SailsSocket("http://localhost:1577");
+        subscriptions = sailsSocket.getSubscriptions().setBatchSize(2);
+    }
+
+    @Test
+    public void subscribeShouldBatchIds() throws Exception {
+        assertThat(subscriptions.subscribe("/user", 1, 2, 3).size(), is(2));
+
+        List<SailsSocketRequest> requests = drain();
+
+        assertThat(requests.size(), is(2));
+        assertThat(requests.get(0).getMethod(), is(SailsSocketRequest.METHOD_GET));
+        assertThat(requests.get(0).getUrl(), is("/user"));
+        assertThat(requests.get(0).getTag(), is(SailsSubscriptions.TAG));
+        assertThat(ids(requests.get(0)), is("[1,2]"));
+        assertThat(requests.get(0).getParams().getInt("limit"), is(2));
+        assertThat(ids(requests.get(1)), is("[3]"));
+    }
+
+    @Test
+    public void subscribeShouldSkipSubscribedIds() throws Exception {
+        subscriptions.subscribe("/user", 1, 2);
+        drain();
+
+        subscriptions.subscribe("/user", 2.0, "1", 3);
+        List<SailsSocketRequest> requests = drain();
+
+        assertThat(requests.size(), is(1));
+        assertThat(ids(requests.get(0)), is("[3]"));
+        assertThat(subscriptions.size(), is(3));
+        assertTrue(subscriptions.isSubscribed("/user", "3"));
+    }
+
+    @Test
+    public void resubscribeShouldBatchEveryUrl() throws Exception {
+        subscriptions.subscribe("/user", 1, 2, 3);
+        subscriptions.subscribe("/pet", "a");
+        drain();
+
+        assertThat(subscriptions.resubscribe().size(), is(3));
+
+        List<SailsSocketRequest> requests = drain();
+
+        assertThat(requests.get(0).getUrl(), is("/user"));
+        assertThat(ids(requests.get(0)), is("[1,2]"));
+        assertThat(ids(requests.get(1)), is("[3]"));
+        assertThat(requests.get(2).getUrl(), is("/pet"));
+        assertThat(ids(requests.get(2)), is("[\"a\"]"));
+    }
+
+    @Test
+    public void unsubscribeShouldStopResubscribing() throws Exception {
+        subscriptions.subscribe("/user", 1, 2, 3);
+        drain();
+
+        assertThat(subscriptions.unsubscribe("/user", 1, 3).size(), is(0));
+        subscriptions.resubscribe();
+
+        List<SailsSocketRequest> requests = drain();
+
+        assertThat(requests.size(), is(1));
+        assertThat(ids(requests.get(0)), is("[2]"));
+        assertThat(subscriptions.getIds("/user"), is(Arrays.<Object>asList(2)));
+    }
+
+    @Test
+    public void unsubscribeShouldPostToUnsubscribeAction() throws Exception {
+        subscriptions.setUnsubscribeAction("unsubscribe");
+        subscriptions.subscribe("/user", 1, 2, 3);
+        drain();
+
+        assertThat(subscriptions.unsubscribeAll("/user").size(), is(2));
+
+        List<SailsSocketRequest> requests = drain();
+
+        assertThat(requests.get(0).getMethod(), is(SailsSocketRequest.METHOD_POST));
+        assertThat(requests.get(0).getUrl(), is("/user/unsubscribe"));
+        assertThat(requests.get(0).getParams().getJSONArray("ids").toString(), is("[1,2]"));
+        assertThat(requests.get(1).getParams().getJSONArray("ids").toString(), is("[3]"));
+        assertThat(subscriptions.size(), is(0));
+    }
+
+    @Test
+    public void clearShouldUnsubscribeEveryUrl() throws Exception {
+        subscriptions.subscribe("/user", 1);
+        subscriptions.subscribe("/pet", 2);
+        drain();
+
+        subscriptions.clear();
+
+        assertThat(subscriptions.getUrls().size(), is(0));
+        assertThat(subscriptions.resubscribe().size(), is(0));
+    }
+
+    @Test
+    public void subscribeShouldBypassResponseCache() throws Exception {
+        subscriptions.subscribe("/user", 1);
+
+        assertThat(drain().get(0).getHeaders().getString("Cache-Control"), is("no-cache"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subscribeShouldRejectNullId() throws Exception {
+        subscriptions.subscribe("/user", 1, null);
+    }
+
+    private List<SailsSocketRequest> drain() {
+        List<SailsSocketRequest> requests = new ArrayList<SailsSocketRequest>();
+        SailsSocketRequest request;
+
+        while ((request = sailsSocket.getRequestQueue().poll()) != null) {
+            requests.add(request);
+        }
+
+        return requests;
+    }
+
+    private static String ids(SailsSocketRequest request) {
+        JSONObject where = request.getParams().getJSONObject("where");
+
+        return where.getJSONArray("id").toString();
+    }
+
+}
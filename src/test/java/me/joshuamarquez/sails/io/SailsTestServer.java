@@ -0,0 +1,358 @@
+package me.joshuamarquez.sails.io;
+
+import com.corundumstudio.socketio.AckMode;
+import com.corundumstudio.socketio.AckRequest;
+import com.corundumstudio.socketio.Configuration;
+import com.corundumstudio.socketio.SocketIOClient;
+import com.corundumstudio.socketio.SocketIOServer;
+import com.corundumstudio.socketio.Transport;
+import com.corundumstudio.socketio.listener.DataListener;
+import io.socket.client.IO;
+import io.socket.engineio.client.transports.WebSocket;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for a Sails server, answering virtual requests the way
+ * sails.io.js expects: "get", "post", "put" and "delete" events acknowledged with
+ * a JWR-shaped payload. Unlike {@link SailsServer} it needs no Node.js and starts
+ * in milliseconds, and routes can be given latency, payload sizes and error rates.
+ *
+ * By default every route answers 200 with a body echoing the method, url, params
+ * and headers of the request. Routes are matched on method and normalized url,
+ * e.g. "/user/:id" matches "/user/42?populate=pets".
+ */
+public class SailsTestServer {
+
+    private static final int MAX_PAYLOAD_LENGTH = 64 * 1024 * 1024;
+
+    private final int port;
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<String, Route>();
+    private volatile Route defaultRoute = new Route();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private SocketIOServer server;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Server listening on a free port.
+     */
+    public SailsTestServer() {
+        this(freePort());
+    }
+
+    public SailsTestServer(int port) {
+        this.port = port;
+    }
+
+    /**
+     * @return url to connect {@link SailsSocket}s to.
+     */
+    public String getUrl() {
+        return "http://localhost:" + port;
+    }
+
+    /**
+     * Connect over WebSocket only: netty-socketio sometimes loses acknowledgements
+     * sent over HTTP polling, before the client upgrades its transport.
+     *
+     * @return new {@link IO.Options} to connect {@link SailsSocket}s with.
+     */
+    public IO.Options getOptions() {
+        IO.Options options = new IO.Options();
+        options.transports = new String[] {WebSocket.NAME};
+
+        return options;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Configure how a route answers.
+     *
+     * @param method HTTP request method, e.g. {@link SailsSocketRequest#METHOD_GET}
+     * @param route normalized url, e.g. "/user/:id"
+     * @return {@link Route} to configure
+     */
+    public Route route(String method, String route) {
+        Route config = new Route();
+        routes.put(key(method, route), config);
+
+        return config;
+    }
+
+    /**
+     * Configure how routes without their own configuration answer.
+     *
+     * @return {@link Route} to configure
+     */
+    public Route defaultRoute() {
+        Route config = new Route();
+        defaultRoute = config;
+
+        return config;
+    }
+
+    /**
+     * Forget route configurations and the request count, e.g. between tests sharing a server.
+     */
+    public void reset() {
+        routes.clear();
+        defaultRoute = new Route();
+        requests.set(0);
+    }
+
+    /**
+     * @return number of requests received.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return number of connected sockets.
+     */
+    public int getConnectedCount() {
+        return server.getAllClients().size();
+    }
+
+    public SailsTestServer start() {
+        Configuration configuration = new Configuration();
+        configuration.setHostname("localhost");
+        configuration.setPort(port);
+        // Dropped requests must not be acknowledged automatically
+        configuration.setAckMode(AckMode.MANUAL);
+        // See getOptions()
+        configuration.setTransports(Transport.WEBSOCKET);
+        configuration.setMaxFramePayloadLength(MAX_PAYLOAD_LENGTH);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        server = new SocketIOServer(configuration);
+
+        for (String method : new String[] {SailsSocketRequest.METHOD_GET, SailsSocketRequest.METHOD_POST,
+                SailsSocketRequest.METHOD_PUT, SailsSocketRequest.METHOD_DELETE}) {
+            server.addEventListener(method, Map.class, new RequestListener(method));
+        }
+
+        server.start();
+
+        return this;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop();
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Send an event to every connected socket, as done by sails.sockets.broadcast().
+     *
+     * @param event event name
+     * @param data event data, e.g. a {@link Map}
+     */
+    public void broadcast(String event, Object data) {
+        server.getBroadcastOperations().sendEvent(event, data);
+    }
+
+    /**
+     * Broadcast an event periodically until the returned future is cancelled or the server stopped.
+     *
+     * @param event event name
+     * @param data event data, e.g. a {@link Map}
+     * @param period time between broadcasts
+     * @param unit {@link TimeUnit} of period
+     * @return {@link ScheduledFuture} cancelling the broadcasts
+     */
+    public ScheduledFuture<?> broadcast(final String event, final Object data, long period, TimeUnit unit) {
+        return scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                broadcast(event, data);
+            }
+        }, 0, period, unit);
+    }
+
+    private static String key(String method, String route) {
+        return method.toLowerCase(Locale.US) + ' ' + route;
+    }
+
+    private static int freePort() {
+        ServerSocket socket = null;
+
+        try {
+            socket = new ServerSocket(0);
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private class RequestListener implements DataListener<Map> {
+
+        private final String method;
+
+        RequestListener(String method) {
+            this.method = method;
+        }
+
+        @Override
+        public void onData(SocketIOClient client, Map request, final AckRequest ack) {
+            requests.incrementAndGet();
+
+            String url = String.valueOf(request.get("url"));
+            Route route = routes.get(key(method, SailsRoute.normalize(url)));
+
+            if (route == null) {
+                route = defaultRoute;
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            if (!ack.isAckRequested() || random.nextDouble() < route.dropRate) {
+                return;
+            }
+
+            final Map<String, Object> response = new HashMap<String, Object>();
+            int statusCode = random.nextDouble() < route.errorRate ? route.errorStatusCode : route.statusCode;
+
+            response.put("statusCode", statusCode);
+            response.put("headers", route.headers);
+            response.put("body", route.payloadSize > 0 ? route.payload : echo(url, request));
+
+            long latency = route.latency + (route.latencyJitter > 0 ? random.nextLong(route.latencyJitter + 1) : 0);
+
+            if (latency > 0) {
+                // Delay the ack without holding up the other requests
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        ack.sendAckData(response);
+                    }
+                }, latency, TimeUnit.MICROSECONDS);
+            } else {
+                ack.sendAckData(response);
+            }
+        }
+
+        private Map<String, Object> echo(String url, Map request) {
+            Map<String, Object> body = new HashMap<String, Object>();
+            body.put("method", method);
+            body.put("url", url);
+            body.put("params", request.get("params"));
+            body.put("headers", request.get("headers"));
+
+            return body;
+        }
+    }
+
+    /**
+     * How a route answers, changes apply to the next requests.
+     */
+    public static class Route {
+
+        private volatile int statusCode = 200;
+        private volatile Map<String, String> headers = Collections.emptyMap();
+
+        // Microseconds
+        private volatile long latency;
+        private volatile long latencyJitter;
+
+        private volatile int payloadSize;
+        private volatile String payload;
+
+        private volatile double errorRate;
+        private volatile int errorStatusCode = 500;
+
+        private volatile double dropRate;
+
+        Route() {}
+
+        public Route setStatusCode(int statusCode) {
+            this.statusCode = statusCode;
+
+            return this;
+        }
+
+        public Route setHeaders(Map<String, String> headers) {
+            this.headers = new HashMap<String, String>(headers);
+
+            return this;
+        }
+
+        /**
+         * Delay responses by latency plus a random delay up to jitter.
+         *
+         * @param latency minimum delay
+         * @param jitter maximum random delay added to latency
+         * @param unit {@link TimeUnit} of latency and jitter
+         * @return {@link Route}
+         */
+        public Route setLatency(long latency, long jitter, TimeUnit unit) {
+            this.latency = unit.toMicros(latency);
+            this.latencyJitter = unit.toMicros(jitter);
+
+            return this;
+        }
+
+        /**
+         * Answer with a string body of payloadSize characters instead of the echo.
+         *
+         * @param payloadSize body size, 0 to echo the request
+         * @return {@link Route}
+         */
+        public Route setPayloadSize(int payloadSize) {
+            char[] payload = new char[payloadSize];
+            Arrays.fill(payload, 'x');
+
+            this.payload = new String(payload);
+            this.payloadSize = payloadSize;
+
+            return this;
+        }
+
+        /**
+         * Answer a random share of requests with an error.
+         *
+         * @param errorRate share of requests failing, between 0 and 1
+         * @param errorStatusCode status code of failed requests
+         * @return {@link Route}
+         */
+        public Route setErrorRate(double errorRate, int errorStatusCode) {
+            this.errorRate = errorRate;
+            this.errorStatusCode = errorStatusCode;
+
+            return this;
+        }
+
+        /**
+         * Never answer a random share of requests, so they time out.
+         *
+         * @param dropRate share of requests dropped, between 0 and 1
+         * @return {@link Route}
+         */
+        public Route setDropRate(double dropRate) {
+            this.dropRate = dropRate;
+
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,506 @@
+package me.joshuamarquez.sails.io;
+
+import io.socket.emitter.Emitter;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+/**
+ * End-to-end suites against {@link SailsTestServer}, no Node.js server needed.
+ */
+public class SailsTestServerTest {
+
+    private static final int TIMEOUT = 15000;
+
+    // Shared as stopping the server takes a while
+    private static SailsTestServer server;
+
+    private SailsSocket sailsSocket;
+    private SailsMetricsRecorder metrics;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = new SailsTestServer().start();
+    }
+
+    @AfterClass
+    public static void stopServer() throws Exception {
+        server.stop();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server.reset();
+        metrics = new SailsMetricsRecorder();
+
+        sailsSocket = new SailsSocket(server.getUrl(), server.getOptions()).setMetrics(metrics);
+        // A lost acknowledgement fails its test at once rather than hanging until the test timeout
+        sailsSocket.setRequestTimeout(5, TimeUnit.SECONDS);
+        sailsSocket.connect();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (sailsSocket != null && sailsSocket.isConnected()) {
+            sailsSocket.disconnect();
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void shouldEchoRequest() throws Exception {
+        JWR response = sailsSocket.getAsync(null, "/user/42", new JSONObject().put("name", "Joshua")).get();
+        JSONObject body = (JSONObject) response.getBody();
+
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(body.getString("method"), is(SailsSocketRequest.METHOD_GET));
+        assertThat(body.getString("url"), is("/user/42"));
+        assertThat(body.getJSONObject("params").getString("name"), is("Joshua"));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void throughputShouldCompleteEveryRequest() throws Exception {
+        int count = 2000;
+        List<SailsSocketFuture> futures = new ArrayList<SailsSocketFuture>(count);
+
+        server.route(SailsSocketRequest.METHOD_POST, "/user").setPayloadSize(256);
+
+        for (int i = 0; i < count; i++) {
+            futures.add(sailsSocket.postAsync(null, "/user", new JSONObject().put("i", i)));
+        }
+
+        for (SailsSocketFuture future : futures) {
+            assertThat(future.get().getBody().toString().length(), is(256));
+        }
+
+        SailsMetricsRecorder.RouteMetrics route = metrics.getRouteMetrics(SailsSocketRequest.METHOD_POST, "/user");
+
+        assertThat(route.getCompletedCount(), is((long) count));
+        assertThat(server.getRequestCount(), is((long) count));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void tailLatencyShouldIncludeRouteLatency() throws Exception {
+        server.route(SailsSocketRequest.METHOD_GET, "/user/:id").setLatency(5, 10, TimeUnit.MILLISECONDS);
+
+        List<SailsSocketFuture> futures = new ArrayList<SailsSocketFuture>();
+
+        for (int i = 0; i < 200; i++) {
+            futures.add(sailsSocket.getAsync(null, "/user/" + i, null));
+        }
+
+        for (SailsSocketFuture future : futures) {
+            future.get();
+        }
+
+        SailsLatencyHistogram latency = metrics.getRouteMetrics(SailsSocketRequest.METHOD_GET, "/user/:id").getLatency();
+
+        assertThat(latency.getCount(), is(200L));
+        assertTrue(latency.getValueAtPercentile(50) >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(latency.getValueAtPercentile(99) >= latency.getValueAtPercentile(50));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void shouldFailAndDropRequests() throws Exception {
+        server.route(SailsSocketRequest.METHOD_GET, "/error").setErrorRate(1, 503);
+        server.route(SailsSocketRequest.METHOD_GET, "/dropped").setDropRate(1);
+
+        assertThat(sailsSocket.getAsync(null, "/error", null).get().getStatusCode(), is(503));
+
+        SailsSocketRequest request = new SailsSocketRequest(null, SailsSocketRequest.METHOD_GET, "/dropped", null)
+                .setTimeout(100, TimeUnit.MILLISECONDS);
+        JWR response = sailsSocket.requestAsync(request).get();
+
+        assertThat(response.getStatusCode(), is(408));
+        assertTrue(response.isLocal());
+        assertThat(metrics.getRouteMetrics(SailsSocketRequest.METHOD_GET, "/error").getFailedCount(), is(1L));
+        assertThat(metrics.getRouteMetrics(SailsSocketRequest.METHOD_GET, "/dropped").getTimedOutCount(), is(1L));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void timeoutShouldNotBeDeliveredOnTimerThread() throws Exception {
+        server.route(SailsSocketRequest.METHOD_GET, "/dropped").setDropRate(1);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String[] threadName = new String[1];
+
+        SailsSocketRequest request = new SailsSocketRequest(null, SailsSocketRequest.METHOD_GET, "/dropped",
+                new SailsSocketResponse.Listener() {
+                    @Override
+                    public void onResponse(JWR response) {
+                        threadName[0] = Thread.currentThread().getName();
+                        latch.countDown();
+                    }
+                }).setTimeout(50, TimeUnit.MILLISECONDS);
+
+        sailsSocket.request(request);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertFalse("sails-timer".equals(threadName[0]));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void pacedDrainShouldNotRunOnTimerThread() throws Exception {
+        final List<String> threadNames = Collections.synchronizedList(new ArrayList<String>());
+        SailsSocket paced = new SailsSocket(server.getUrl(), server.getOptions())
+                .setDrainRate(50, 1)
+                .setDrainListener(new SailsSocket.DrainListener() {
+                    @Override
+                    public void onDrainProgress(int drained, int remaining) {
+                        threadNames.add(Thread.currentThread().getName());
+                    }
+
+                    @Override
+                    public void onDrainComplete(int drained) {
+                    }
+                });
+
+        List<SailsSocketFuture> futures = new ArrayList<SailsSocketFuture>();
+
+        for (int i = 0; i < 3; i++) {
+            futures.add(paced.getAsync(null, "/user/" + i, null));
+        }
+
+        paced.connect();
+
+        try {
+            for (SailsSocketFuture future : futures) {
+                assertThat(future.get(5, TimeUnit.SECONDS).getStatusCode(), is(200));
+            }
+        } finally {
+            paced.disconnect();
+        }
+
+        assertThat(threadNames.size(), is(3));
+        assertFalse(threadNames.contains("sails-timer"));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void syncRequestShouldReturnResponse() throws Exception {
+        JWR response = sailsSocket.putSync(null, "/user/42", new JSONObject().put("name", "Joshua"),
+                5, TimeUnit.SECONDS);
+
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(((JSONObject) response.getBody()).getString("method"), is(SailsSocketRequest.METHOD_PUT));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void syncRequestShouldTimeOutAndCancel() throws Exception {
+        server.route(SailsSocketRequest.METHOD_GET, "/dropped").setDropRate(1);
+
+        try {
+            sailsSocket.getSync(null, "/dropped", null, 100, TimeUnit.MILLISECONDS);
+            fail("Expected TimeoutException");
+        } catch (TimeoutException e) {
+            assertThat(sailsSocket.getPendingRequestCount(), is(0));
+        }
+
+        // Queued while disconnected, removed from the queue
+        SailsSocket disconnected = new SailsSocket(server.getUrl(), server.getOptions());
+
+        try {
+            disconnected.getSync(null, "/user", null, 50, TimeUnit.MILLISECONDS);
+            fail("Expected TimeoutException");
+        } catch (TimeoutException e) {
+            assertTrue(disconnected.getRequestQueue().isEmpty());
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void slowListenerShouldNotHoldUpOtherResponses() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        final CountDownLatch slow = new CountDownLatch(1);
+        final CountDownLatch fast = new CountDownLatch(1);
+
+        try {
+            sailsSocket.setCallbackExecutor(executor, true);
+
+            sailsSocket.get("slow", "/slow", null, new SailsSocketResponse.Listener() {
+                @Override
+                public void onResponse(JWR response) {
+                    try {
+                        slow.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+
+            sailsSocket.get("fast", "/fast", null, new SailsSocketResponse.Listener() {
+                @Override
+                public void onResponse(JWR response) {
+                    fast.countDown();
+                }
+            });
+
+            assertTrue(fast.await(5, TimeUnit.SECONDS));
+        } finally {
+            slow.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void offShouldRemoveDispatchedListener() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        try {
+            sailsSocket.setCallbackExecutor(executor);
+            sailsSocket.getAsync(null, "/hello", null).get();
+
+            Emitter.Listener listener = new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    values.offer(Thread.currentThread());
+                }
+            };
+
+            sailsSocket.on("user", listener);
+            server.broadcast("user", Collections.singletonMap("verb", "created"));
+            assertNotNull(values.poll(5, TimeUnit.SECONDS));
+
+            sailsSocket.off("user", listener);
+            assertFalse(sailsSocket.getSocket().hasListeners("user"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void shouldSubscribeAgainAfterReconnect() throws Exception {
+        SailsSubscriptions subscriptions = sailsSocket.getSubscriptions().setBatchSize(2);
+
+        for (SailsSocketFuture future : subscriptions.subscribe("/user", 1, 2, 3)) {
+            JSONObject params = ((JSONObject) future.get().getBody()).getJSONObject("params");
+            assertThat(params.getInt("limit"), is(params.getJSONObject("where").getJSONArray("id").length()));
+        }
+
+        assertThat(server.getRequestCount(), is(2L));
+
+        sailsSocket.disconnect();
+
+        while (sailsSocket.isConnected()) {
+            Thread.sleep(10);
+        }
+
+        sailsSocket.reconnect();
+
+        while (server.getRequestCount() < 4) {
+            Thread.sleep(10);
+        }
+
+        Thread.sleep(100);
+        assertThat(server.getRequestCount(), is(4L));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void disconnectShouldRequeueIdempotentRequests() throws Exception {
+        SailsTestServer.Route dropped = server.route(SailsSocketRequest.METHOD_GET, "/dropped").setDropRate(1);
+        server.route(SailsSocketRequest.METHOD_POST, "/dropped").setDropRate(1);
+
+        SailsSocketRequest get = new SailsSocketRequest(null, SailsSocketRequest.METHOD_GET, "/dropped", null);
+        SailsSocketFuture getFuture = sailsSocket.requestAsync(get);
+        SailsSocketFuture postFuture = sailsSocket.postAsync(null, "/dropped", null);
+
+        assertTrue(get.isIdempotent());
+        assertFalse(postFuture.getRequest().isIdempotent());
+
+        while (server.getRequestCount() < 2) {
+            Thread.sleep(10);
+        }
+
+        assertThat(sailsSocket.getInFlightRequestCount(), is(2));
+        assertThat(sailsSocket.getInFlightRequests().size(), is(2));
+
+        dropped.setDropRate(0);
+        sailsSocket.disconnect();
+
+        JWR failed = postFuture.get();
+        assertThat(failed.getStatusCode(), is(503));
+        assertTrue(failed.isLocal());
+
+        // Queued again by the event thread
+        while (sailsSocket.getRequestQueue().isEmpty()) {
+            Thread.sleep(10);
+        }
+
+        assertThat(sailsSocket.getInFlightRequestCount(), is(0));
+        assertFalse(getFuture.isDone());
+
+        sailsSocket.reconnect();
+
+        assertThat(getFuture.get().getStatusCode(), is(200));
+        assertThat(get.getAttempts(), is(2));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void disconnectShouldFailRequests() throws Exception {
+        server.route(SailsSocketRequest.METHOD_GET, "/dropped").setDropRate(1);
+        sailsSocket.setDisconnectPolicy(SailsSocket.DisconnectPolicy.FAIL);
+
+        SailsSocketFuture future = sailsSocket.getAsync(null, "/dropped", null);
+
+        while (server.getRequestCount() < 1) {
+            Thread.sleep(10);
+        }
+
+        sailsSocket.disconnect();
+
+        assertThat(future.get().getStatusCode(), is(503));
+        assertThat(sailsSocket.getPendingRequestCount(), is(0));
+        assertTrue(sailsSocket.getRequestQueue().isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void disconnectShouldFailRequestsDespiteRetryPolicy() throws Exception {
+        server.route(SailsSocketRequest.METHOD_GET, "/dropped").setDropRate(1);
+        sailsSocket.setDisconnectPolicy(SailsSocket.DisconnectPolicy.FAIL);
+        sailsSocket.setRetryPolicy(new SailsRetryPolicy().setBackoff(1, 5, TimeUnit.MILLISECONDS));
+
+        SailsSocketFuture future = sailsSocket.getAsync(null, "/dropped", null);
+
+        while (server.getRequestCount() < 1) {
+            Thread.sleep(10);
+        }
+
+        sailsSocket.disconnect();
+
+        JWR failed = future.get();
+        assertThat(failed.getStatusCode(), is(503));
+        assertTrue(failed.isLocal());
+        assertThat(future.getRequest().getAttempts(), is(1));
+
+        Thread.sleep(50);
+        assertTrue(sailsSocket.getRequestQueue().isEmpty());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void shouldRetryIdempotentRequests() throws Exception {
+        server.route(SailsSocketRequest.METHOD_GET, "/unavailable").setStatusCode(503);
+        server.route(SailsSocketRequest.METHOD_POST, "/unavailable").setStatusCode(503);
+
+        SailsRetryPolicy policy = new SailsRetryPolicy().setBackoff(1, 5, TimeUnit.MILLISECONDS);
+        sailsSocket.setRetryPolicy(policy);
+
+        SailsSocketRequest get = new SailsSocketRequest(null, SailsSocketRequest.METHOD_GET, "/unavailable", null);
+
+        assertThat(sailsSocket.requestAsync(get).get().getStatusCode(), is(503));
+        assertThat(get.getAttempts(), is(3));
+        assertThat(server.getRequestCount(), is(3L));
+
+        assertThat(sailsSocket.postAsync(null, "/unavailable", null).get().getStatusCode(), is(503));
+        assertThat(server.getRequestCount(), is(4L));
+
+        assertThat(policy.getRetryCount(), is(2L));
+        assertThat(sailsSocket.getPendingRequestCount(), is(0));
+        assertThat(sailsSocket.getInFlightRequestCount(), is(0));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void shouldRetryTimedOutRequests() throws Exception {
+        SailsTestServer.Route dropped = server.route(SailsSocketRequest.METHOD_GET, "/dropped").setDropRate(1);
+
+        sailsSocket.setRetryPolicy(new SailsRetryPolicy().setMaxAttempts(2).setBackoff(1, 5, TimeUnit.MILLISECONDS));
+
+        SailsSocketRequest request = new SailsSocketRequest(null, SailsSocketRequest.METHOD_GET, "/dropped", null)
+                .setTimeout(100, TimeUnit.MILLISECONDS);
+        SailsSocketFuture future = sailsSocket.requestAsync(request);
+
+        assertThat(future.get().getStatusCode(), is(408));
+        assertThat(server.getRequestCount(), is(2L));
+
+        dropped.setDropRate(0);
+        request = new SailsSocketRequest(null, SailsSocketRequest.METHOD_GET, "/dropped", null)
+                .setTimeout(5, TimeUnit.SECONDS);
+
+        assertThat(sailsSocket.requestAsync(request).get().getStatusCode(), is(200));
+        assertThat(request.getAttempts(), is(1));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void openCircuitShouldFailFast() throws Exception {
+        server.route(SailsSocketRequest.METHOD_GET, "/broken/:id").setStatusCode(500);
+
+        SailsCircuitBreaker breaker = new SailsCircuitBreaker().setWindow(4, 4);
+        sailsSocket.setCircuitBreaker(breaker);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(sailsSocket.getAsync(null, "/broken/" + i, null).get().getStatusCode(), is(500));
+        }
+
+        assertThat(breaker.getState(SailsSocketRequest.METHOD_GET, "/broken/:id"),
+                is(SailsCircuitBreaker.State.OPEN));
+
+        JWR response = sailsSocket.getAsync(null, "/broken/5", null).get();
+
+        assertThat(response.getStatusCode(), is(503));
+        assertTrue(response.isLocal());
+        assertThat(server.getRequestCount(), is(4L));
+
+        assertThat(sailsSocket.getAsync(null, "/user/1", null).get().getStatusCode(), is(200));
+        assertThat(sailsSocket.getPendingRequestCount(), is(0));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void coalescedRequestsShouldShareOneProbe() throws Exception {
+        SailsTestServer.Route broken = server.route(SailsSocketRequest.METHOD_GET, "/broken/:id").setStatusCode(500);
+
+        SailsCircuitBreaker breaker = new SailsCircuitBreaker()
+                .setWindow(4, 4)
+                .setOpenDuration(50, TimeUnit.MILLISECONDS)
+                .setHalfOpenProbes(1);
+        sailsSocket.setCircuitBreaker(breaker).setCoalesceGets(true);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(sailsSocket.getAsync(null, "/broken/" + i, null).get().getStatusCode(), is(500));
+        }
+
+        broken.setStatusCode(200).setLatency(50, 50, TimeUnit.MILLISECONDS);
+        Thread.sleep(60);
+
+        List<SailsSocketFuture> futures = new ArrayList<SailsSocketFuture>();
+
+        for (int i = 0; i < 3; i++) {
+            futures.add(sailsSocket.getAsync(null, "/broken/1", null));
+        }
+
+        for (SailsSocketFuture future : futures) {
+            assertThat(future.get().getStatusCode(), is(200));
+        }
+
+        assertThat(server.getRequestCount(), is(5L));
+        assertThat(breaker.getState(SailsSocketRequest.METHOD_GET, "/broken/:id"),
+                is(SailsCircuitBreaker.State.CLOSED));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void shouldBroadcastEvents() throws Exception {
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<Object>();
+
+        // Wait for the connection before broadcasting
+        sailsSocket.getAsync(null, "/hello", null).get();
+
+        sailsSocket.on("user", new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                values.offer(args[0]);
+            }
+        });
+
+        server.broadcast("user", Collections.singletonMap("verb", "created"));
+
+        assertThat(((JSONObject) values.take()).getString("verb"), is("created"));
+    }
+
+}
@@ -0,0 +1,103 @@
+package me.joshuamarquez.sails.io;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class SailsTimerTest {
+
+    private SailsTimer timer;
+
+    @Before
+    public void setUp() throws Exception {
+        timer = new SailsTimer(5, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @Test(timeout = 2000)
+    public void shouldRunTaskAfterDelay() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        SailsTimer.Timeout timeout = timer.schedule(countDown(latch), 50, TimeUnit.MILLISECONDS);
+
+        latch.await();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test(timeout = 2000)
+    public void shouldRunTasksBeyondOneRotation() throws Exception {
+        // 8 buckets of 5 ms make a 40 ms rotation
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        timer.schedule(countDown(latch), 130, TimeUnit.MILLISECONDS);
+
+        latch.await();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 130);
+    }
+
+    @Test(timeout = 2000)
+    public void cancelledTaskShouldNotRun() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+
+        SailsTimer.Timeout timeout = timer.schedule(task, 30, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertThat(timer.pendingTimeouts(), is(0));
+
+        Thread.sleep(100);
+        assertThat(runs.get(), is(0));
+    }
+
+    @Test(timeout = 5000)
+    public void shouldRunManyTasks() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(10000);
+
+        for (int i = 0; i < 20000; i++) {
+            SailsTimer.Timeout timeout = timer.schedule(countDown(latch), i % 100, TimeUnit.MILLISECONDS);
+
+            if (i % 2 == 0) {
+                timeout.cancel();
+            }
+        }
+
+        latch.await();
+        assertThat(timer.pendingTimeouts(), is(0));
+    }
+
+    @Test(timeout = 2000)
+    public void shouldWakeUpAfterBeingIdle() throws Exception {
+        CountDownLatch first = new CountDownLatch(1);
+        timer.schedule(countDown(first), 10, TimeUnit.MILLISECONDS);
+        first.await();
+
+        Thread.sleep(100);
+
+        CountDownLatch second = new CountDownLatch(1);
+        timer.schedule(countDown(second), 10, TimeUnit.MILLISECONDS);
+        second.await();
+    }
+
+    private Runnable countDown(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+    }
+
+}